@@ -1,6 +1,7 @@
 plugins {
     `java`
     id("com.gradleup.shadow") version "9.2.2"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "archive.chat"
@@ -21,6 +22,25 @@ dependencies {
     compileOnly("com.google.code.gson:gson:2.13.2")  // Paper provides Gson
     compileOnly("com.github.LeonMangler:PremiumVanishAPI:2.9.18-2")  // PremiumVanish API (provided by PremiumVanish plugin)
     implementation("io.lettuce:lettuce-core:7.0.0.RELEASE")
+
+    // Provided at runtime on the server, but the benchmarks run standalone
+    jmh("io.papermc.paper:paper-api:${property("paper_api")}")
+    jmh("com.google.code.gson:gson:2.13.2")
+
+    testImplementation(platform("org.junit:junit-bom:5.13.4"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testImplementation("com.google.code.gson:gson:2.13.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+// Benchmarks: ./gradlew jmh (results in build/results/jmh)
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    profilers.add("gc")
+    resultFormat = "JSON"
 }
 
 val targetJavaVersion = 21
@@ -51,6 +71,10 @@ tasks {
         }
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
     jar {
         enabled = false
     }
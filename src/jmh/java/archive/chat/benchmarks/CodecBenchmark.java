@@ -0,0 +1,87 @@
+package archive.chat.benchmarks;
+
+import archive.chat.messaging.ChatMessage;
+import archive.chat.messaging.NetworkMessage;
+import archive.chat.messaging.PrivateMessage;
+import archive.chat.messaging.WireCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of the JSON and binary wire formats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CodecBenchmark {
+    @Param({"16", "256"})
+    public int messageLength;
+
+    private ChatMessage chat;
+    private PrivateMessage whisper;
+    private byte[] chatJson;
+    private byte[] chatBinary;
+    private byte[] whisperJson;
+    private byte[] whisperBinary;
+
+    @Setup
+    public void setup() {
+        String text = "hello world, this is a chat line ".repeat(messageLength / 32 + 1).substring(0, messageLength);
+        chat = new ChatMessage("SomePlayer", "survival", text);
+        whisper = new PrivateMessage(UUID.randomUUID(), "SomePlayer", "survival", "OtherPlayer", text);
+        chatJson = chat.toJson().getBytes(StandardCharsets.UTF_8);
+        chatBinary = WireCodec.encode(chat);
+        whisperJson = whisper.toJson().getBytes(StandardCharsets.UTF_8);
+        whisperBinary = WireCodec.encode(whisper);
+    }
+
+    @Benchmark
+    public byte[] encodeChatJson() {
+        return chat.toJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeChatBinary() {
+        return WireCodec.encode(chat);
+    }
+
+    @Benchmark
+    public ChatMessage decodeChatJson() {
+        return ChatMessage.fromJson(new String(chatJson, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public NetworkMessage decodeChatBinary() {
+        return WireCodec.decode(chatBinary);
+    }
+
+    @Benchmark
+    public byte[] encodePrivateJson() {
+        return whisper.toJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodePrivateBinary() {
+        return WireCodec.encode(whisper);
+    }
+
+    @Benchmark
+    public PrivateMessage decodePrivateJson() {
+        return PrivateMessage.fromJson(new String(whisperJson, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public NetworkMessage decodePrivateBinary() {
+        return WireCodec.decode(whisperBinary);
+    }
+}
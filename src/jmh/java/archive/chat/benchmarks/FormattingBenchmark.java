@@ -0,0 +1,75 @@
+package archive.chat.benchmarks;
+
+import archive.chat.messaging.MessageFormats;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Private message formatting: the original escape + replace + deserialize per message,
+ * against rendering the pre-parsed templates. For relayed chat, also deserializing the
+ * line as pre-rendered by the sending server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormattingBenchmark {
+    private static final String RECEIVED_FORMAT = "<light_purple><sender> whispers: <light_purple><message>";
+    private static final String CHAT_FORMAT = "<server> <white><sender><gray>: <white><message>";
+
+    private final MiniMessage miniMessage = MiniMessage.miniMessage();
+    private final String sender = "SomePlayer";
+    private final String server = "<gold>[Survival]";
+    private final String message = "anyone want to trade <3 diamonds for some iron?";
+    private MessageFormats formats;
+    private String renderedChat;
+
+    @Setup
+    public void setup() {
+        var config = new YamlConfiguration();
+        config.set("formats.received", RECEIVED_FORMAT);
+        config.set("formats.chat", CHAT_FORMAT);
+        formats = new MessageFormats(config);
+        renderedChat = GsonComponentSerializer.gson().serialize(formats.chat(server, sender, message));
+    }
+
+    @Benchmark
+    public Component receivedEscapeAndParse() {
+        return miniMessage.deserialize(RECEIVED_FORMAT
+            .replace("<sender>", miniMessage.escapeTags(sender))
+            .replace("<message>", miniMessage.escapeTags(message)));
+    }
+
+    @Benchmark
+    public Component receivedTemplate() {
+        return formats.received(sender, message);
+    }
+
+    @Benchmark
+    public Component chatEscapeAndParse() {
+        return miniMessage.deserialize(CHAT_FORMAT
+            .replace("<server>", server)
+            .replace("<sender>", miniMessage.escapeTags(sender))
+            .replace("<message>", miniMessage.escapeTags(message)));
+    }
+
+    @Benchmark
+    public Component chatTemplate() {
+        return formats.chat(server, sender, message);
+    }
+
+    @Benchmark
+    public Component chatDeserializeRendered() {
+        return GsonComponentSerializer.gson().deserialize(renderedChat);
+    }
+}
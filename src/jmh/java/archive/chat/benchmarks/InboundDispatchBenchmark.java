@@ -0,0 +1,45 @@
+package archive.chat.benchmarks;
+
+import archive.chat.redis.InboundDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Per-message overhead of handing inbound work to the main-thread dispatcher:
+ * a burst is submitted and then drained in one tick, as on the server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InboundDispatchBenchmark {
+    private static final int BURST = 256;
+
+    private InboundDispatcher dispatcher;
+    private Runnable work;
+    private long executed;
+
+    @Setup
+    public void setup() {
+        dispatcher = new InboundDispatcher(Logger.getLogger("benchmark"), BURST * 4, 50,
+            InboundDispatcher.OverflowPolicy.DROP_OLDEST);
+        work = () -> executed++;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public int submitAndDrain() {
+        for (int i = 0; i < BURST; i++) {
+            dispatcher.submit(work);
+        }
+        return dispatcher.drain();
+    }
+}
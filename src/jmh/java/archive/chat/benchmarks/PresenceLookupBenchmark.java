@@ -0,0 +1,126 @@
+package archive.chat.benchmarks;
+
+import archive.chat.redis.PresenceDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Presence lookup strategies against an in-process Redis stand-in, where each
+ * command costs one simulated round trip:
+ * the original SCAN over per-server sets with a SISMEMBER per set, the single
+ * presence hash lookup, and the local presence directory (no round trip).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PresenceLookupBenchmark {
+    private static final int SCAN_PAGE_SIZE = 100;
+
+    @Param({"4", "32"})
+    public int servers;
+
+    @Param({"50"})
+    public int playersPerServer;
+
+    /** Simulated round-trip cost in JMH CPU tokens (0 isolates the client-side work) */
+    @Param({"0", "2000"})
+    public long roundTripTokens;
+
+    private FakeRedis redis;
+    private PresenceDirectory directory;
+    private String lastPlayer;
+
+    /**
+     * Just enough of Redis for the lookups: a keyspace of sets and one hash.
+     */
+    private final class FakeRedis {
+        private final Map<String, Set<String>> sets = new HashMap<>();
+        private final Map<String, String> presenceHash = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+
+        List<String> scan(int cursor) {
+            Blackhole.consumeCPU(roundTripTokens);
+            return keys.subList(cursor, Math.min(keys.size(), cursor + SCAN_PAGE_SIZE));
+        }
+
+        boolean sismember(String key, String member) {
+            Blackhole.consumeCPU(roundTripTokens);
+            var set = sets.get(key);
+            return set != null && set.contains(member);
+        }
+
+        String hget(String field) {
+            Blackhole.consumeCPU(roundTripTokens);
+            return presenceHash.get(field);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        redis = new FakeRedis();
+        directory = new PresenceDirectory();
+        Map<String, PresenceDirectory.Entry> snapshot = new HashMap<>();
+        for (int s = 0; s < servers; s++) {
+            String server = "server" + s;
+            String key = "archivechat:online:" + server;
+            Set<String> members = new HashSet<>();
+            for (int p = 0; p < playersPerServer; p++) {
+                String name = "Player" + s + "_" + p;
+                String lower = name.toLowerCase();
+                members.add(lower);
+                redis.presenceHash.put(lower, System.currentTimeMillis() + ":" + name + ":" + server);
+                snapshot.put(lower, new PresenceDirectory.Entry(name, server));
+                lastPlayer = name;
+            }
+            redis.sets.put(key, members);
+            redis.keys.add(key);
+        }
+        directory.beginSnapshot().seed(snapshot);
+    }
+
+    /**
+     * Worst case for the scan: the player is on the last server scanned.
+     */
+    @Benchmark
+    public boolean scanAndSismember() {
+        String lower = lastPlayer.toLowerCase();
+        int cursor = 0;
+        while (cursor < redis.keys.size()) {
+            var page = redis.scan(cursor);
+            for (String key : page) {
+                if (redis.sismember(key, lower)) {
+                    return true;
+                }
+            }
+            cursor += page.size();
+        }
+        return false;
+    }
+
+    @Benchmark
+    public String presenceHash() {
+        String entry = redis.hget(lastPlayer.toLowerCase());
+        if (entry == null) return null;
+        return entry.substring(entry.indexOf(':', entry.indexOf(':') + 1) + 1);
+    }
+
+    @Benchmark
+    public String presenceDirectory() {
+        return directory.getServer(lastPlayer);
+    }
+}
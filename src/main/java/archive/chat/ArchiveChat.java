@@ -1,15 +1,25 @@
 package archive.chat;
 
+import archive.chat.commands.ArchiveChatCommand;
+import archive.chat.commands.ChatHistoryCommand;
 import archive.chat.commands.LastCommand;
 import archive.chat.commands.MsgCommand;
 import archive.chat.commands.ReplyCommand;
+import archive.chat.messaging.ChatHistory;
 import archive.chat.messaging.ChatMessage;
+import archive.chat.messaging.LocalPlayerIndex;
+import archive.chat.messaging.MessageFormats;
 import archive.chat.messaging.MessageService;
 import archive.chat.messaging.VanishManager;
+import archive.chat.metrics.ChatMetrics;
+import archive.chat.metrics.DeliveryTracer;
 import archive.chat.redis.RedisManager;
 import io.papermc.paper.plugin.lifecycle.event.types.LifecycleEvents;
-import net.kyori.adventure.text.minimessage.MiniMessage;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
@@ -17,7 +27,8 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.PluginEnableEvent;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * ArchiveChat - Cross-server private messaging plugin for thearchive.world
@@ -26,14 +37,20 @@ import org.bukkit.scheduler.BukkitTask;
 public final class ArchiveChat extends JavaPlugin {
     private RedisManager redisManager;
     private MessageService messageService;
+    private LocalPlayerIndex playerIndex;
+    private MessageFormats formats;
+    private ChatHistory chatHistory;
+    private ChatMetrics metrics;
     private MsgCommand msgCommand;
     private ReplyCommand replyCommand;
     private LastCommand lastCommand;
+    private ArchiveChatCommand adminCommand;
+    private ChatHistoryCommand historyCommand;
     private String serverName;
-    private BukkitTask heartbeatTask;
+    private ScheduledTask heartbeatTask;
+    private ScheduledTask directoryResyncTask;
 
-    private static final long HEARTBEAT_TTL_SECONDS = 60;
-    private static final long HEARTBEAT_INTERVAL_TICKS = 30 * 20; // 30 seconds
+    private static final long DIRECTORY_RESYNC_INTERVAL_SECONDS = 60;
 
     @Override
     public void onEnable() {
@@ -47,53 +64,89 @@ public final class ArchiveChat extends JavaPlugin {
             getLogger().warning("Using default server-name 'server1'. Consider setting a unique name in config.yml");
         }
 
+        // Runtime metrics, also exported over JMX
+        metrics = new ChatMetrics(new DeliveryTracer(getLogger(),
+            getConfig().getDouble("tracing.sample-rate", 1.0),
+            getConfig().getLong("tracing.slow-threshold-ms", 500)));
+        metrics.registerMBean(getLogger());
+
+        // Message formats, parsed once; needed before Redis since inbound chat is rendered as it arrives
+        formats = new MessageFormats(getConfig());
+
+        // Recent chat, sent to joining players and shown by /chathistory
+        chatHistory = new ChatHistory(getConfig().getInt("chat-history.size", 100),
+            getConfig().getInt("chat-history.join-lines", 10));
+        Bukkit.getPluginManager().registerEvents(chatHistory, this);
+
+        // Sorted index of local players for tab completion
+        playerIndex = new LocalPlayerIndex();
+        Bukkit.getPluginManager().registerEvents(playerIndex, this);
+
         // Initialize Redis if enabled
         if (enabled) {
             String redisUri = getConfig().getString("redis.uri", "redis://localhost:6379");
             redisManager = new RedisManager(this, redisUri, serverName);
             if (redisManager.connect()) {
-                // Register chat listener for cross-server chat sync
-                var chatListener = new ChatListener(redisManager, serverName);
-                Bukkit.getPluginManager().registerEvents(chatListener, this);
                 getLogger().info("Chat sync enabled");
 
                 // Register player connection listener for online player registry
                 Bukkit.getPluginManager().registerEvents(new PlayerConnectionListener(), this);
 
-                // Register PremiumVanish listener if available
-                if (Bukkit.getPluginManager().getPlugin("PremiumVanish") != null) {
-                    var vanishManager = new VanishManager(redisManager);
-                    Bukkit.getPluginManager().registerEvents(vanishManager, this);
-                    getLogger().info("PremiumVanish integration enabled - vanish status changes will sync instantly");
-                }
+                // Register all currently online players (excluding vanished players) in one batch.
+                // This also drops entries left behind if this server previously crashed.
+                redisManager.resyncServerPlayers();
 
-                // Register all currently online players (excluding vanished players)
-                for (var player : Bukkit.getOnlinePlayers()) {
-                    if (!VanishManager.isVanished(player)) {
-                        redisManager.registerPlayer(player.getName());
-                    }
-                }
+                // Start heartbeat task to renew liveness and leases (crash recovery),
+                // and sweep out players of servers that stopped heartbeating
+                long heartbeatSeconds = Math.max(1, getConfig().getLong("presence.heartbeat-seconds", 5));
+                long livenessTtlSeconds = getConfig().getLong("presence.liveness-ttl-seconds", 15);
+                int sweepBatchSize = getConfig().getInt("presence.sweep-batch-size", 100);
+                redisManager.refreshHeartbeat(livenessTtlSeconds);
+                heartbeatTask = Bukkit.getAsyncScheduler().runAtFixedRate(this,
+                    task -> {
+                        redisManager.refreshHeartbeat(livenessTtlSeconds);
+                        redisManager.sweepStalePresence(livenessTtlSeconds * 1000, sweepBatchSize);
+                    },
+                    heartbeatSeconds,
+                    heartbeatSeconds,
+                    TimeUnit.SECONDS
+                );
 
-                // Start heartbeat task to refresh TTL (crash recovery)
-                redisManager.refreshHeartbeat(HEARTBEAT_TTL_SECONDS);
-                heartbeatTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
-                    () -> redisManager.refreshHeartbeat(HEARTBEAT_TTL_SECONDS),
-                    HEARTBEAT_INTERVAL_TICKS,
-                    HEARTBEAT_INTERVAL_TICKS
+                // Periodically reload the presence directory as a safety net for missed updates
+                directoryResyncTask = Bukkit.getAsyncScheduler().runAtFixedRate(this,
+                    task -> redisManager.resyncPresenceDirectory(),
+                    DIRECTORY_RESYNC_INTERVAL_SECONDS,
+                    DIRECTORY_RESYNC_INTERVAL_SECONDS,
+                    TimeUnit.SECONDS
                 );
             }
         } else {
             getLogger().info("Cross-server features disabled");
         }
 
+        // Register PremiumVanish listener if available. Tab completion relies on it to see
+        // vanish changes right away, so it is needed even without Redis.
+        if (Bukkit.getPluginManager().getPlugin("PremiumVanish") != null) {
+            var vanishManager = new VanishManager(redisManager, playerIndex);
+            Bukkit.getPluginManager().registerEvents(vanishManager, this);
+            getLogger().info("PremiumVanish integration enabled - vanish status changes will sync instantly");
+        }
+
+        // Record local chat in the history and, when connected, relay it to other servers
+        boolean chatSync = redisManager != null && redisManager.isConnected();
+        var chatListener = new ChatListener(chatSync ? redisManager : null, chatHistory, formats, serverName);
+        Bukkit.getPluginManager().registerEvents(chatListener, this);
+
         // Initialize message service
         messageService = new MessageService(this, redisManager);
         Bukkit.getPluginManager().registerEvents(messageService, this);
 
         // Initialize command instances
-        msgCommand = new MsgCommand(this, messageService);
+        msgCommand = new MsgCommand(this, messageService, playerIndex);
         replyCommand = new ReplyCommand(this, messageService);
         lastCommand = new LastCommand(this, messageService);
+        adminCommand = new ArchiveChatCommand(metrics);
+        historyCommand = new ChatHistoryCommand(this, chatHistory);
 
         // Register commands using Paper's lifecycle events (Brigadier)
         getLifecycleManager().registerEventHandler(LifecycleEvents.COMMANDS, event -> {
@@ -101,7 +154,9 @@ public final class ArchiveChat extends JavaPlugin {
             msgCommand.register(registrar);
             replyCommand.register(registrar);
             lastCommand.register(registrar);
-            getLogger().info("Registered /msg, /w, /whisper, /tell, /pm, /reply, /r, /last, /l commands");
+            adminCommand.register(registrar);
+            historyCommand.register(registrar);
+            getLogger().info("Registered /msg, /w, /whisper, /tell, /pm, /reply, /r, /last, /l, /archivechat, /chathistory commands");
         });
 
         getLogger().info("ArchiveChat enabled!");
@@ -112,23 +167,38 @@ public final class ArchiveChat extends JavaPlugin {
         if (heartbeatTask != null) {
             heartbeatTask.cancel();
         }
+        if (directoryResyncTask != null) {
+            directoryResyncTask.cancel();
+        }
         if (redisManager != null) {
             redisManager.cleanupServerPlayers();
             redisManager.disconnect();
         }
+        if (metrics != null) {
+            metrics.unregisterMBean();
+        }
     }
 
     public MessageService getMessageService() {
         return messageService;
     }
 
+    public ChatMetrics getMetrics() {
+        return metrics;
+    }
+
+    public MessageFormats getFormats() {
+        return formats;
+    }
+
     /**
      * Manually sync a player's vanish status with the Redis online player registry.
      * This can be called by other plugins when a player's vanish status changes.
      *
      * @param player The player whose vanish status should be synced
      */
-    public void syncPlayerVanishStatus(org.bukkit.entity.Player player) {
+    public void syncPlayerVanishStatus(Player player) {
+        playerIndex.invalidateVisibility(player);
         if (redisManager != null && redisManager.isConnected()) {
             if (VanishManager.isVanished(player)) {
                 redisManager.unregisterPlayer(player.getName());
@@ -138,26 +208,40 @@ public final class ArchiveChat extends JavaPlugin {
         }
     }
 
-    public void handleIncomingChat(ChatMessage msg) {
+    /**
+     * Render chat relayed from another server. Safe to call off the main thread.
+     *
+     * @return The line to broadcast, or null for messages from our own server
+     */
+    public Component renderIncomingChat(ChatMessage msg) {
         // Ignore messages from our own server
         if (msg.senderServer().equals(serverName)) {
-            return;
+            return null;
         }
 
-        // Use the sender's server name directly (includes their chosen formatting)
-        String prefix = msg.senderServer() + " ";
-
-        // Escape user input to prevent MiniMessage injection
-        var mm = MiniMessage.miniMessage();
-        String escapedName = mm.escapeTags(msg.senderName());
-        String escapedMessage = mm.escapeTags(msg.message());
+        // Use the line as the sending server rendered it, when it sent one
+        if (msg.rendered() != null) {
+            try {
+                return GsonComponentSerializer.gson().deserialize(msg.rendered());
+            } catch (RuntimeException e) {
+                getLogger().fine("Invalid rendered chat line from " + msg.senderServer() + ": " + e.getMessage());
+            }
+        }
 
-        // Format: ServerPrefix PlayerName: message
-        String formatted = prefix + "<white>" + escapedName + "<gray>: <white>" + escapedMessage;
-        var component = mm.deserialize(formatted);
+        // Format: ServerPrefix PlayerName: message (server prefix includes the sender's chosen formatting)
+        return formats.chat(msg.senderServer(), msg.senderName(), msg.message());
+    }
 
-        // Broadcast to all online players
-        Bukkit.broadcast(component);
+    /**
+     * Broadcast an already rendered chat line from another server to all online players.
+     * Each player receives it on the thread that owns them (on Folia, their region).
+     */
+    public void handleIncomingChat(Component line) {
+        chatHistory.add(line);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            messageService.runForPlayer(player, () -> player.sendMessage(line));
+        }
+        Bukkit.getConsoleSender().sendMessage(line);
     }
 
     /**
@@ -192,17 +276,11 @@ public final class ArchiveChat extends JavaPlugin {
             // Detect common vanish plugins
             if (pluginName.contains("vanish") || pluginName.contains("essentials")) {
                 // Schedule a delayed task to refresh player registry after vanish plugin is fully loaded
-                Bukkit.getScheduler().runTaskLater(ArchiveChat.this, () -> {
+                Bukkit.getGlobalRegionScheduler().runDelayed(ArchiveChat.this, task -> {
                     if (redisManager != null && redisManager.isConnected()) {
                         getLogger().info("Refreshing online player registry after " + event.getPlugin().getName() + " loaded");
-                        // Re-sync all online players
-                        for (var player : Bukkit.getOnlinePlayers()) {
-                            if (VanishManager.isVanished(player)) {
-                                redisManager.unregisterPlayer(player.getName());
-                            } else {
-                                redisManager.registerPlayer(player.getName());
-                            }
-                        }
+                        // Re-sync all online players in a single batch
+                        redisManager.resyncServerPlayers();
                     }
                 }, 20L); // Wait 1 second for plugin to fully initialize
             }
@@ -1,31 +1,52 @@
 package archive.chat;
 
+import archive.chat.messaging.ChatHistory;
 import archive.chat.messaging.ChatMessage;
+import archive.chat.messaging.MessageFormats;
 import archive.chat.redis.RedisManager;
 import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 
 public class ChatListener implements Listener {
     private final RedisManager redisManager;
+    private final ChatHistory history;
+    private final MessageFormats formats;
     private final String serverName;
 
-    public ChatListener(RedisManager redisManager, String serverName) {
+    /**
+     * @param redisManager Redis connection to relay chat through, or null to only record history
+     */
+    public ChatListener(RedisManager redisManager, ChatHistory history, MessageFormats formats, String serverName) {
         this.redisManager = redisManager;
+        this.history = history;
+        this.formats = formats;
         this.serverName = serverName;
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onChat(AsyncChatEvent event) {
         var player = event.getPlayer();
+
+        // Keep the line as the console sees it, which has no viewer-specific formatting
+        history.add(event.renderer().render(player, player.displayName(), event.message(), Bukkit.getConsoleSender()));
+        if (redisManager == null) return;
+
         var message = PlainTextComponentSerializer.plainText().serialize(event.message());
 
+        // Render the relayed line once here, keeping the message's formatting, so receiving
+        // servers only deserialize it; the plain text is kept for servers that don't read it
+        var rendered = formats.chat(serverName, player.getName(), event.message());
+
         var chatMessage = new ChatMessage(
             player.getName(),
             serverName,
-            message
+            message,
+            GsonComponentSerializer.gson().serialize(rendered)
         );
 
         redisManager.sendChatMessage(chatMessage);
@@ -0,0 +1,98 @@
+package archive.chat.commands;
+
+import archive.chat.metrics.ChatMetrics;
+import archive.chat.metrics.LatencyHistogram;
+import com.mojang.brigadier.context.CommandContext;
+import io.papermc.paper.command.brigadier.CommandSourceStack;
+import io.papermc.paper.command.brigadier.Commands;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.command.CommandSender;
+
+import java.util.TreeMap;
+
+/**
+ * Brigadier command handler for /archivechat admin subcommands.
+ * /archivechat stats shows the runtime metrics; /archivechat stats reset zeroes them.
+ */
+public class ArchiveChatCommand {
+    private final ChatMetrics metrics;
+
+    public ArchiveChatCommand(ChatMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers the /archivechat command using Paper's Commands API
+     */
+    public void register(Commands registrar) {
+        registrar.register(
+            Commands.literal("archivechat")
+                .requires(source -> source.getSender().hasPermission("archivechat.admin"))
+                .then(Commands.literal("stats")
+                    .executes(this::showStats)
+                    .then(Commands.literal("reset")
+                        .executes(this::resetStats)
+                    )
+                )
+                .build(),
+            "ArchiveChat administration"
+        );
+    }
+
+    private int showStats(CommandContext<CommandSourceStack> context) {
+        CommandSender sender = context.getSource().getSender();
+        send(sender, "<gold>ArchiveChat stats");
+        send(sender, "<gray>Chat: <white>" + metrics.getChatPublished() + "</white> sent, <white>"
+            + metrics.getChatReceived() + "</white> received");
+        send(sender, "<gray>Whispers: <white>" + metrics.getPrivatePublished() + "</white> sent, <white>"
+            + metrics.getPrivateReceived() + "</white> received, <white>" + metrics.getWhispersUndeliverable()
+            + "</white> undeliverable, <white>" + metrics.getWhispersTimedOut() + "</white> timed out");
+        send(sender, "<gray>Errors: <white>" + metrics.getDecodeFailures() + "</white> decode, <white>"
+            + metrics.getPublishFailures() + "</white> publish");
+        send(sender, "<gray>Inbound queue: <white>" + metrics.getInboundQueueDepth() + "</white> waiting, <white>"
+            + metrics.getInboundDropped() + "</white> dropped");
+        send(sender, "<gray>Outbound queue: <white>" + metrics.getOutboundQueueDepth() + "</white> waiting, <white>"
+            + metrics.getOutboundChatDropped() + "</white> chat and <white>" + metrics.getOutboundWhispersDropped()
+            + "</white> whispers dropped");
+        sendLatency(sender, "Publish", metrics.publishLatency());
+        sendLatency(sender, "Presence lookup", metrics.lookupLatency());
+        sendLatency(sender, "Inbound queue delay", metrics.inboundQueueDelay());
+        sendLatency(sender, "Main-thread delivery", metrics.deliveryTime());
+
+        var tracer = metrics.tracer();
+        send(sender, "<gray>Traced: <white>" + tracer.getTracedCount() + "</white> messages, <white>"
+            + tracer.getSlowCount() + "</white> slow");
+        for (var origin : new TreeMap<>(tracer.getOrigins()).entrySet()) {
+            var stats = origin.getValue();
+            var total = stats.total().snapshot();
+            send(sender, "<gray>From " + MiniMessage.miniMessage().escapeTags(origin.getKey()) + ": total p50 <white>"
+                + formatMicros(total.p50Micros()) + "</white>, p99 <white>" + formatMicros(total.p99Micros())
+                + "</white> (p99 transit <white>" + formatMicros(stats.transit().snapshot().p99Micros())
+                + "</white>, queue <white>" + formatMicros(stats.queue().snapshot().p99Micros())
+                + "</white>, delivery <white>" + formatMicros(stats.delivery().snapshot().p99Micros()) + "</white>)");
+        }
+        return 1;
+    }
+
+    private int resetStats(CommandContext<CommandSourceStack> context) {
+        metrics.reset();
+        send(context.getSource().getSender(), "<gray>ArchiveChat stats reset");
+        return 1;
+    }
+
+    private void sendLatency(CommandSender sender, String label, LatencyHistogram histogram) {
+        var snapshot = histogram.snapshot();
+        send(sender, "<gray>" + label + ": <white>" + snapshot.count() + "</white> samples, mean <white>"
+            + formatMicros(snapshot.meanMicros()) + "</white>, p50 <white>" + formatMicros(snapshot.p50Micros())
+            + "</white>, p99 <white>" + formatMicros(snapshot.p99Micros()) + "</white>, max <white>"
+            + formatMicros(snapshot.maxMicros()));
+    }
+
+    private static String formatMicros(long micros) {
+        return micros >= 1000 ? String.format("%.1fms", micros / 1000.0) : micros + "\u00b5s";
+    }
+
+    private static void send(CommandSender sender, String format) {
+        sender.sendMessage(MiniMessage.miniMessage().deserialize(format));
+    }
+}
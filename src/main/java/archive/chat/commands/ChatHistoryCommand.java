@@ -0,0 +1,56 @@
+package archive.chat.commands;
+
+import archive.chat.ArchiveChat;
+import archive.chat.messaging.ChatHistory;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import io.papermc.paper.command.brigadier.CommandSourceStack;
+import io.papermc.paper.command.brigadier.Commands;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+
+/**
+ * Brigadier command handler for /chathistory.
+ * Shows recent network chat from this server's in-memory history.
+ */
+public class ChatHistoryCommand {
+    private static final int DEFAULT_LINES = 20;
+
+    private final ArchiveChat plugin;
+    private final ChatHistory history;
+
+    public ChatHistoryCommand(ArchiveChat plugin, ChatHistory history) {
+        this.plugin = plugin;
+        this.history = history;
+    }
+
+    /**
+     * Registers the /chathistory command using Paper's Commands API
+     */
+    public void register(Commands registrar) {
+        registrar.register(
+            Commands.literal("chathistory")
+                .requires(source -> source.getSender().hasPermission("archivechat.history"))
+                .executes(context -> show(context, DEFAULT_LINES))
+                .then(Commands.argument("lines", IntegerArgumentType.integer(1, Math.max(1, history.capacity())))
+                    .executes(context -> show(context, IntegerArgumentType.getInteger(context, "lines")))
+                )
+                .build(),
+            "Show recent chat"
+        );
+    }
+
+    private int show(CommandContext<CommandSourceStack> context, int lines) {
+        var sender = context.getSource().getSender();
+        var recent = history.recent(lines);
+        if (recent.isEmpty()) {
+            sender.sendMessage(MiniMessage.miniMessage().deserialize(
+                plugin.getConfig().getString("messages.history-empty", "<gray>No recent chat")
+            ));
+            return 0;
+        }
+        sender.sendMessage(Component.join(JoinConfiguration.newlines(), recent));
+        return 1;
+    }
+}
@@ -1,14 +1,13 @@
 package archive.chat.commands;
 
 import archive.chat.ArchiveChat;
+import archive.chat.messaging.LocalPlayerIndex;
 import archive.chat.messaging.MessageService;
-import archive.chat.messaging.VanishManager;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import io.papermc.paper.command.brigadier.CommandSourceStack;
 import io.papermc.paper.command.brigadier.Commands;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
 /**
@@ -16,12 +15,17 @@ import org.bukkit.entity.Player;
  * Each command is registered as a separate literal to override vanilla commands.
  */
 public class MsgCommand {
+    /** Cap on tab completions per keystroke, so large networks don't flood the client */
+    private static final int MAX_SUGGESTIONS = 50;
+
     private final ArchiveChat plugin;
     private final MessageService messageService;
+    private final LocalPlayerIndex playerIndex;
 
-    public MsgCommand(ArchiveChat plugin, MessageService messageService) {
+    public MsgCommand(ArchiveChat plugin, MessageService messageService, LocalPlayerIndex playerIndex) {
         this.plugin = plugin;
         this.messageService = messageService;
+        this.playerIndex = playerIndex;
     }
 
     /**
@@ -37,21 +41,17 @@ public class MsgCommand {
                     .requires(source -> source.getSender().hasPermission("archivechat.msg"))
                     .then(Commands.argument("player", StringArgumentType.word())
                         .suggests((context, builder) -> {
-                            // Suggest online player names (excluding sender and vanished players)
+                            // Suggest online player names network-wide (excluding sender and vanished players)
                             var sender = context.getSource().getSender();
-                            Bukkit.getOnlinePlayers().forEach(player -> {
-                                // Don't suggest sender's own name
-                                if (sender instanceof Player senderPlayer &&
-                                    player.getUniqueId().equals(senderPlayer.getUniqueId())) {
-                                    return; // Skip
-                                }
-                                // Don't suggest vanished players (unless sender can see them)
-                                if (sender instanceof Player senderPlayer &&
-                                    !VanishManager.canSee(senderPlayer, player)) {
-                                    return; // Skip
-                                }
-                                builder.suggest(player.getName());
-                            });
+                            String prefix = builder.getRemainingLowerCase();
+                            Player viewer = sender instanceof Player senderPlayer ? senderPlayer : null;
+                            var localNames = playerIndex.findByPrefix(viewer, prefix, MAX_SUGGESTIONS);
+                            localNames.forEach(builder::suggest);
+                            // Players on other servers come from the local presence directory;
+                            // vanished players are never registered there
+                            for (String name : messageService.findRemotePlayerNames(prefix, MAX_SUGGESTIONS - localNames.size())) {
+                                builder.suggest(name);
+                            }
                             return builder.buildFuture();
                         })
                         .then(Commands.argument("message", StringArgumentType.greedyString())
@@ -92,6 +92,7 @@ public class MsgCommand {
             return 0;
         }
 
+        // Non-blocking: cross-server lookup and sender feedback complete asynchronously
         messageService.sendPrivateMessage(player, recipientName, message);
         return 1;
     }
@@ -55,21 +55,29 @@ public class ReplyCommand {
             return 0;
         }
 
-        TargetInfo targetInfo = messageService.getReplyTarget(player.getUniqueId());
-        if (targetInfo == null) {
+        String message = StringArgumentType.getString(context, "message");
+
+        if (message.isBlank()) {
             player.sendMessage(MiniMessage.miniMessage().deserialize(
-                plugin.getConfig().getString("messages.no-reply-target", "<red>No one to reply to")
+                plugin.getConfig().getString("messages.empty-message", "<red>Message cannot be empty")
             ));
             return 0;
         }
 
-        String message = StringArgumentType.getString(context, "message");
+        // Non-blocking: the target may still be loading after a server switch
+        messageService.getReplyTarget(player.getUniqueId()).thenAccept(targetInfo ->
+            messageService.runForPlayer(player, () -> sendToTarget(player, targetInfo, message)));
+        return 1;
+    }
 
-        if (message.isBlank()) {
+    private void sendToTarget(Player player, TargetInfo targetInfo, String message) {
+        if (!player.isOnline()) return;
+
+        if (targetInfo == null) {
             player.sendMessage(MiniMessage.miniMessage().deserialize(
-                plugin.getConfig().getString("messages.empty-message", "<red>Message cannot be empty")
+                plugin.getConfig().getString("messages.no-reply-target", "<red>No one to reply to")
             ));
-            return 0;
+            return;
         }
 
         // Try to find target player locally first
@@ -78,16 +86,13 @@ public class ReplyCommand {
         if (target != null) {
             // Target is online locally
             messageService.sendPrivateMessage(player, target.getName(), message);
-            return 1;
         } else if (targetInfo.name() != null) {
             // Target is on another server - send cross-server message by name
             messageService.sendPrivateMessage(player, targetInfo.name(), message);
-            return 1;
         } else {
             player.sendMessage(MiniMessage.miniMessage().deserialize(
                 plugin.getConfig().getString("messages.player-offline", "<red>Player is no longer online")
             ));
-            return 0;
         }
     }
 }
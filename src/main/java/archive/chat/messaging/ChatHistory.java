@@ -0,0 +1,69 @@
+package archive.chat.messaging;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recently shown chat lines, local and relayed from other servers, in a fixed-size ring buffer.
+ * Joining players are sent the latest lines straight from memory, and /chathistory reads
+ * the same buffer, so neither costs a Redis round trip.
+ */
+public class ChatHistory implements Listener {
+    private final Component[] lines;
+    private final int joinLines;
+    private long written; // Total lines ever added, guarded by this
+
+    /**
+     * @param size      Number of lines kept (0 disables history)
+     * @param joinLines Number of lines sent to joining players (0 disables the backfill)
+     */
+    public ChatHistory(int size, int joinLines) {
+        this.lines = new Component[Math.max(0, size)];
+        this.joinLines = joinLines;
+    }
+
+    /**
+     * Record a rendered chat line, overwriting the oldest once full. Safe to call from any thread.
+     */
+    public synchronized void add(Component line) {
+        if (lines.length == 0) return;
+        lines[(int) (written % lines.length)] = line;
+        written++;
+    }
+
+    /**
+     * @return Up to {@code limit} of the most recent lines, oldest first
+     */
+    public synchronized List<Component> recent(int limit) {
+        int count = (int) Math.min(Math.min(limit, lines.length), written);
+        List<Component> result = new ArrayList<>(Math.max(0, count));
+        for (long i = written - count; i < written; i++) {
+            result.add(lines[(int) (i % lines.length)]);
+        }
+        return result;
+    }
+
+    /**
+     * Maximum number of lines kept.
+     */
+    public int capacity() {
+        return lines.length;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (joinLines <= 0) return;
+        var recent = recent(joinLines);
+        if (!recent.isEmpty()) {
+            // One message for the whole backfill rather than a packet per line
+            event.getPlayer().sendMessage(Component.join(JoinConfiguration.newlines(), recent));
+        }
+    }
+}
@@ -2,13 +2,37 @@ package archive.chat.messaging;
 
 import com.google.gson.Gson;
 
+/**
+ * A chat line relayed to other servers.
+ *
+ * @param message  The line as plain text
+ * @param rendered The final line as rendered by the sending server, serialized with
+ *                 Adventure's Gson serializer (null from servers that don't send it)
+ */
 public record ChatMessage(
     String senderName,
     String senderServer,
-    String message
-) {
+    String message,
+    long messageId,
+    long sentAt,
+    String rendered
+) implements NetworkMessage {
     private static final Gson GSON = new Gson();
 
+    /**
+     * A new chat message, stamped with a fresh ID and the current time.
+     */
+    public ChatMessage(String senderName, String senderServer, String message) {
+        this(senderName, senderServer, message, null);
+    }
+
+    /**
+     * A new chat message with its rendered line, stamped with a fresh ID and the current time.
+     */
+    public ChatMessage(String senderName, String senderServer, String message, String rendered) {
+        this(senderName, senderServer, message, NetworkMessage.newMessageId(), System.currentTimeMillis(), rendered);
+    }
+
     public String toJson() {
         return GSON.toJson(this);
     }
@@ -0,0 +1,159 @@
+package archive.chat.messaging;
+
+import archive.chat.redis.RedisManager;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Reply and last-sent targets for each player, shared across the network.
+ *
+ * Lookups are served from a local cache whose entries expire after the configured TTL.
+ * Updates go to the cache immediately and are written behind to Redis on the next tick,
+ * so after a server switch the new server can load them when the player joins.
+ * Lookups made while that load is still running wait on it instead of failing.
+ */
+public class ConversationStore {
+    private static final String REPLY_FIELD = "reply";
+    private static final String LAST_FIELD = "last";
+
+    private final RedisManager redis;
+    private final Logger logger;
+    private final long ttlMillis;
+    private final Map<UUID, CachedTarget> replyTargets = new ConcurrentHashMap<>();
+    private final Map<UUID, CachedTarget> lastSentTargets = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<Void>> loads = new ConcurrentHashMap<>();
+
+    private record CachedTarget(TargetInfo target, long expiresAt) {
+    }
+
+    /**
+     * @param redis      Redis backing store (null when cross-server features are disabled)
+     * @param ttlSeconds How long a conversation target is remembered after it was last updated
+     */
+    public ConversationStore(RedisManager redis, Logger logger, long ttlSeconds) {
+        this.redis = redis;
+        this.logger = logger;
+        this.ttlMillis = Math.max(1, ttlSeconds) * 1000;
+    }
+
+    public void setReplyTarget(UUID playerUUID, TargetInfo target) {
+        put(replyTargets, REPLY_FIELD, playerUUID, target);
+    }
+
+    public void setLastSentTarget(UUID playerUUID, TargetInfo target) {
+        put(lastSentTargets, LAST_FIELD, playerUUID, target);
+    }
+
+    /**
+     * Get the player's reply target. Completes immediately unless their
+     * conversation state is still being loaded from Redis.
+     *
+     * @return A future completing with the target, or null if there is none
+     */
+    public CompletableFuture<TargetInfo> getReplyTarget(UUID playerUUID) {
+        return get(replyTargets, playerUUID);
+    }
+
+    /**
+     * Get the player's last-sent target. Completes immediately unless their
+     * conversation state is still being loaded from Redis.
+     *
+     * @return A future completing with the target, or null if there is none
+     */
+    public CompletableFuture<TargetInfo> getLastSentTarget(UUID playerUUID) {
+        return get(lastSentTargets, playerUUID);
+    }
+
+    /**
+     * Start loading a joining player's conversation state from Redis.
+     * Targets set locally before the load completes take precedence.
+     */
+    public void load(UUID playerUUID) {
+        if (redis == null || !redis.isConnected()) return;
+
+        var pending = new CompletableFuture<Void>();
+        loads.put(playerUUID, pending);
+        redis.loadConversation(playerUUID).whenComplete((fields, e) -> {
+            // Skip if the player left (or rejoined) while loading
+            if (loads.get(playerUUID) == pending) {
+                if (e != null) {
+                    logger.fine("Failed to load conversation state: " + e.getMessage());
+                } else {
+                    restore(replyTargets, playerUUID, fields.get(REPLY_FIELD));
+                    restore(lastSentTargets, playerUUID, fields.get(LAST_FIELD));
+                }
+            }
+            loads.remove(playerUUID, pending);
+            pending.complete(null);
+        });
+    }
+
+    /**
+     * Drop a player's cached state when they leave this server. The Redis copy is kept
+     * (until its TTL runs out) for whichever server they join next.
+     */
+    public void evict(UUID playerUUID) {
+        replyTargets.remove(playerUUID);
+        lastSentTargets.remove(playerUUID);
+        loads.remove(playerUUID);
+    }
+
+    private void put(Map<UUID, CachedTarget> cache, String field, UUID playerUUID, TargetInfo target) {
+        cache.put(playerUUID, new CachedTarget(target, System.currentTimeMillis() + ttlMillis));
+        if (redis != null && redis.isConnected()) {
+            redis.saveConversation(playerUUID, field, encode(target), ttlMillis / 1000);
+        }
+    }
+
+    private CompletableFuture<TargetInfo> get(Map<UUID, CachedTarget> cache, UUID playerUUID) {
+        TargetInfo cached = getCached(cache, playerUUID);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        var pending = loads.get(playerUUID);
+        if (pending == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return pending.thenApply(ignored -> getCached(cache, playerUUID));
+    }
+
+    private TargetInfo getCached(Map<UUID, CachedTarget> cache, UUID playerUUID) {
+        CachedTarget entry = cache.get(playerUUID);
+        if (entry == null) return null;
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            cache.remove(playerUUID, entry);
+            return null;
+        }
+        return entry.target();
+    }
+
+    private void restore(Map<UUID, CachedTarget> cache, UUID playerUUID, String value) {
+        TargetInfo target = decode(value);
+        if (target != null) {
+            cache.putIfAbsent(playerUUID, new CachedTarget(target, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    /**
+     * Stored as {@code <uuid>:<name>}, with an empty UUID for cross-server targets.
+     */
+    private static String encode(TargetInfo target) {
+        return (target.uuid() != null ? target.uuid().toString() : "") + ":" + target.name();
+    }
+
+    private static TargetInfo decode(String value) {
+        if (value == null) return null;
+        int separator = value.indexOf(':');
+        if (separator < 0 || separator == value.length() - 1) return null;
+        try {
+            UUID uuid = separator == 0 ? null : UUID.fromString(value.substring(0, separator));
+            return new TargetInfo(uuid, value.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
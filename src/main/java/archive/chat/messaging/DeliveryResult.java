@@ -0,0 +1,18 @@
+package archive.chat.messaging;
+
+/**
+ * Outcome of a private message send, reported back to the sender on their own thread.
+ */
+public enum DeliveryResult {
+    /** Delivered locally or published to the network */
+    SENT,
+    /** Recipient is not online (or not visible) anywhere */
+    NOT_FOUND,
+    /**
+     * Presence lookup or publish did not complete within the delivery timeout. The message
+     * was not sent, unless the publish had already gone out and its reply was late.
+     */
+    TIMED_OUT,
+    /** Redis reported an error or is unavailable */
+    FAILED
+}
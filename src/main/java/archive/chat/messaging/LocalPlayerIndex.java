@@ -0,0 +1,110 @@
+package archive.chat.messaging;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted, case-insensitive index of the players online on this server, for tab completion.
+ *
+ * Updated incrementally on join and quit, so suggestions are a prefix range scan rather
+ * than a walk over every online player. Visibility checks are cached per viewer; when a player
+ * joins, quits, vanishes or unvanishes, only the answers involving that player are dropped.
+ * Cached answers also expire after a short time, since vanish plugins without events can
+ * change visibility silently.
+ */
+public class LocalPlayerIndex implements Listener {
+    private static final long VISIBILITY_TTL_MILLIS = 1000;
+
+    private final NavigableMap<String, Player> players = new ConcurrentSkipListMap<>();
+    private final Map<UUID, VisibilityCache> visibility = new ConcurrentHashMap<>();
+
+    /**
+     * Visibility answers for one viewer, by target.
+     */
+    private record VisibilityCache(long createdAt, Map<UUID, Boolean> canSee) {
+        boolean isValid(long now) {
+            return now - createdAt < VISIBILITY_TTL_MILLIS;
+        }
+    }
+
+    public LocalPlayerIndex() {
+        // Pick up players already online (plugin reload)
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            players.put(player.getName().toLowerCase(), player);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        players.put(player.getName().toLowerCase(), player);
+        invalidateVisibility(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        Player player = event.getPlayer();
+        players.remove(player.getName().toLowerCase(), player);
+        invalidateVisibility(player);
+    }
+
+    /**
+     * Drop the cached visibility answers involving a player, both what they see and who
+     * sees them. Call when the player's vanish state changes.
+     */
+    public void invalidateVisibility(Player player) {
+        UUID playerUUID = player.getUniqueId();
+        visibility.remove(playerUUID);
+        for (VisibilityCache cache : visibility.values()) {
+            cache.canSee().remove(playerUUID);
+        }
+    }
+
+    /**
+     * Find names of online players starting with a prefix, in sorted order.
+     * Skips the viewer themselves and players hidden from them.
+     *
+     * @param viewer The player asking (null for console, which sees everyone)
+     * @param prefix The typed prefix (case-insensitive)
+     * @param limit  Maximum names to return
+     * @return Matching names in their original case
+     */
+    public List<String> findByPrefix(Player viewer, String prefix, int limit) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<String> names = new ArrayList<>();
+        for (var entry : players.tailMap(lowerPrefix, true).entrySet()) {
+            if (names.size() >= limit || !entry.getKey().startsWith(lowerPrefix)) {
+                break;
+            }
+            Player target = entry.getValue();
+            if (viewer != null && (target.getUniqueId().equals(viewer.getUniqueId()) || !canSee(viewer, target))) {
+                continue;
+            }
+            names.add(target.getName());
+        }
+        return names;
+    }
+
+    private boolean canSee(Player viewer, Player target) {
+        long now = System.currentTimeMillis();
+        VisibilityCache cache = visibility.get(viewer.getUniqueId());
+        if (cache == null || !cache.isValid(now)) {
+            cache = new VisibilityCache(now, new ConcurrentHashMap<>());
+            visibility.put(viewer.getUniqueId(), cache);
+        }
+        return cache.canSee().computeIfAbsent(target.getUniqueId(), id -> VanishManager.canSee(viewer, target));
+    }
+}
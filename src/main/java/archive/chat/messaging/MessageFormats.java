@@ -0,0 +1,72 @@
+package archive.chat.messaging;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Message formats from config, parsed once into reusable templates.
+ */
+public class MessageFormats {
+    private final MessageTemplate sent;
+    private final MessageTemplate received;
+    private final MessageTemplate chat;
+    private final Map<String, Component> serverPrefixes = new ConcurrentHashMap<>();
+
+    private static final int MAX_CACHED_PREFIXES = 256;
+
+    public MessageFormats(ConfigurationSection config) {
+        this.sent = new MessageTemplate(config.getString("formats.sent",
+            "<light_purple>to <recipient>: <light_purple><message>"), "recipient", "message");
+        this.received = new MessageTemplate(config.getString("formats.received",
+            "<light_purple><sender> whispers: <light_purple><message>"), "sender", "message");
+        this.chat = new MessageTemplate(config.getString("formats.chat",
+            "<server> <white><sender><gray>: <white><message>"), "server", "sender", "message");
+    }
+
+    /**
+     * Format shown to the sender of a private message.
+     */
+    public Component sent(String recipientName, String message) {
+        return sent.render(recipientName, message);
+    }
+
+    /**
+     * Format shown to the recipient of a private message.
+     */
+    public Component received(String senderName, String message) {
+        return received.render(senderName, message);
+    }
+
+    /**
+     * Format for chat relayed from another server.
+     */
+    public Component chat(String senderServer, String senderName, String message) {
+        return chat(senderServer, senderName, Component.text(message));
+    }
+
+    /**
+     * Format for chat relayed to other servers, keeping the message's own formatting.
+     */
+    public Component chat(String senderServer, String senderName, Component message) {
+        return chat.render(serverPrefix(senderServer), Component.text(senderName), message);
+    }
+
+    /**
+     * The server name parsed as MiniMessage (server names may include their own formatting).
+     * Cached since there are only a handful of servers on the network.
+     */
+    public Component serverPrefix(String serverName) {
+        Component prefix = serverPrefixes.get(serverName);
+        if (prefix == null) {
+            prefix = MiniMessage.miniMessage().deserialize(serverName);
+            if (serverPrefixes.size() < MAX_CACHED_PREFIXES) {
+                serverPrefixes.put(serverName, prefix);
+            }
+        }
+        return prefix;
+    }
+}
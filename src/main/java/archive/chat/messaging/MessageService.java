@@ -1,7 +1,9 @@
 package archive.chat.messaging;
 
 import archive.chat.ArchiveChat;
+import archive.chat.metrics.ChatMetrics;
 import archive.chat.redis.RedisManager;
+import io.lettuce.core.RedisCommandTimeoutException;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.Bukkit;
@@ -9,109 +11,230 @@ import org.bukkit.entity.Player;
 
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class MessageService implements Listener {
     private final ArchiveChat plugin;
     private final RedisManager redis;
-    private final Map<UUID, TargetInfo> replyTargets = new ConcurrentHashMap<>();
-    private final Map<UUID, TargetInfo> lastSentTargets = new ConcurrentHashMap<>();
+    private final ConversationStore conversations;
+    private final ChatMetrics metrics;
+    private final Map<UUID, PendingDeliveries> pendingDeliveries = new ConcurrentHashMap<>();
     private final String serverName;
+    private final long deliveryTimeoutMillis;
 
-    // Message formats from config
-    private final String sentFormat;
-    private final String receivedFormat;
+    private static final long PENDING_NOTICE_TICKS = 20; // 1 second
+
+    /**
+     * Cross-server messages a sender has waiting on the network, and whether they were
+     * already told so, so that overlapping slow deliveries show a single notice.
+     */
+    private record PendingDeliveries(int count, boolean notified) {
+    }
+
+    // Message formats from config, parsed once by the plugin
+    private final MessageFormats formats;
 
     public MessageService(ArchiveChat plugin, RedisManager redis) {
         this.plugin = plugin;
         this.redis = redis;
         this.serverName = plugin.getConfig().getString("server-name", "server1");
-        this.sentFormat = plugin.getConfig().getString("formats.sent",
-            "<light_purple>to <recipient>: <light_purple><message>");
-        this.receivedFormat = plugin.getConfig().getString("formats.received",
-            "<light_purple><sender> whispers: <light_purple><message>");
+        this.deliveryTimeoutMillis = plugin.getConfig().getLong("delivery.timeout-ms", 3000);
+        this.formats = plugin.getFormats();
+        this.metrics = plugin.getMetrics();
+        this.conversations = new ConversationStore(redis, plugin.getLogger(),
+            plugin.getConfig().getLong("conversations.ttl-seconds", 1800));
     }
 
-    public void sendPrivateMessage(Player sender, String recipientName, String message) {
+    /**
+     * Send a private message without blocking the calling thread.
+     * Local recipients are handled immediately; cross-server recipients are looked up
+     * and published asynchronously, with feedback delivered on the sender's own thread.
+     *
+     * @return A future completing with the delivery result once the sender has been notified
+     */
+    public CompletableFuture<DeliveryResult> sendPrivateMessage(Player sender, String recipientName, String message) {
         // Check if player is online locally
         Player localRecipient = Bukkit.getPlayerExact(recipientName);
 
         if (localRecipient != null) {
             // Check if sender can see the recipient (respects vanish)
             if (!VanishManager.canSee(sender, localRecipient)) {
-                sender.sendMessage(MiniMessage.miniMessage().deserialize(
-                    plugin.getConfig().getString("messages.player-not-found", "<red>Player not found")
-                ));
-                return;
+                metrics.whisperUndeliverable();
+                sendConfigMessage(sender, "messages.player-not-found", "<red>Player not found");
+                return CompletableFuture.completedFuture(DeliveryResult.NOT_FOUND);
             }
             // Local delivery
             deliverMessage(sender, localRecipient, message);
-        } else if (redis != null && redis.isConnected()) {
-            // Check if player is online on any server before sending
-            if (!redis.isPlayerOnlineAnywhere(recipientName)) {
-                sender.sendMessage(MiniMessage.miniMessage().deserialize(
-                    plugin.getConfig().getString("messages.player-not-found", "<red>Player not found")
-                ));
-                return;
+            return CompletableFuture.completedFuture(DeliveryResult.SENT);
+        }
+
+        if (redis == null || !redis.canLocatePlayers()) {
+            // Cross-server features disabled, or Redis down with no presence to fall back on;
+            // either way the player was not found locally
+            metrics.whisperUndeliverable();
+            sendConfigMessage(sender, "messages.player-not-found", "<red>Player not found");
+            return CompletableFuture.completedFuture(DeliveryResult.NOT_FOUND);
+        }
+
+        // Cross-server delivery via Redis - lookup and publish run off the main thread
+        UUID senderUUID = sender.getUniqueId();
+        var privateMessage = new PrivateMessage(
+            senderUUID,
+            sender.getName(),
+            serverName,
+            recipientName,
+            message
+        );
+
+        pendingDeliveries.merge(senderUUID, new PendingDeliveries(1, false),
+            (current, added) -> new PendingDeliveries(current.count() + 1, current.notified()));
+        // The timeout covers the lookup, the wait to be published and the publish reply.
+        // A whisper still waiting to be published at the deadline is never sent.
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deliveryTimeoutMillis);
+        CompletableFuture<DeliveryResult> result = redis.findPlayerServer(recipientName)
+            .orTimeout(deliveryTimeoutMillis, TimeUnit.MILLISECONDS)
+            // The directory can still point at this server while our own quit is in flight;
+            // the player isn't here (checked above), so publishing to ourselves would be lost
+            .thenCompose(server -> server == null || server.equals(serverName)
+                ? CompletableFuture.completedFuture(DeliveryResult.NOT_FOUND)
+                : awaitPublish(redis.sendCrossServerMessage(privateMessage, server, deadline),
+                    senderUUID, recipientName, deadline))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof TimeoutException || cause instanceof RedisCommandTimeoutException) {
+                    return DeliveryResult.TIMED_OUT;
+                }
+                plugin.getLogger().warning("Cross-server message failed: " + cause.getMessage());
+                return DeliveryResult.FAILED;
+            });
+
+        // Let the sender know if the network is slow to respond (skipped if they log out first),
+        // once until all of their pending deliveries have completed
+        if (!result.isDone()) {
+            sender.getScheduler().runDelayed(plugin, task -> {
+                if (!result.isDone() && markNotified(senderUUID)) {
+                    sendConfigMessage(sender, "messages.delivery-pending", "<gray>Delivering message...");
+                }
+            }, null, PENDING_NOTICE_TICKS);
+        }
+
+        return result.thenApply(status -> {
+            completeCrossServerDelivery(sender, recipientName, message, status);
+            return status;
+        });
+    }
+
+    /**
+     * Wait for a whisper's publish reply for at most what is left of the delivery timeout,
+     * rather than Lettuce's much longer command timeout. A publish that succeeds after the
+     * sender was told it timed out still counts as sent for /last.
+     */
+    private CompletableFuture<DeliveryResult> awaitPublish(CompletableFuture<Long> publish, UUID senderUUID,
+                                                           String recipientName, long deadline) {
+        // No subscriber means the hosting server went away since its presence was recorded
+        CompletableFuture<DeliveryResult> status = publish
+            .thenApply(receivers -> receivers > 0 ? DeliveryResult.SENT : DeliveryResult.NOT_FOUND);
+        CompletableFuture<DeliveryResult> bounded = status.copy()
+            .orTimeout(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        status.thenAccept(late -> {
+            if (late == DeliveryResult.SENT && bounded.isCompletedExceptionally()) {
+                conversations.setLastSentTarget(senderUUID, TargetInfo.crossServer(recipientName));
             }
+        });
+        return bounded;
+    }
 
-            // Cross-server delivery via Redis
-            redis.sendCrossServerMessage(new PrivateMessage(
-                sender.getUniqueId(),
-                sender.getName(),
-                serverName,
-                recipientName,
-                message
-            ));
+    private void completeCrossServerDelivery(Player sender, String recipientName, String message, DeliveryResult status) {
+        UUID senderUUID = sender.getUniqueId();
+        pendingDeliveries.computeIfPresent(senderUUID, (uuid, pending) -> pending.count() > 1
+            ? new PendingDeliveries(pending.count() - 1, pending.notified())
+            : null);
+        switch (status) {
+            case TIMED_OUT -> metrics.whisperTimedOut();
+            case NOT_FOUND, FAILED -> metrics.whisperUndeliverable();
+            default -> { }
+        }
 
-            // Update last sent target for cross-server (store name only since UUID is unknown)
-            lastSentTargets.put(sender.getUniqueId(), TargetInfo.crossServer(recipientName));
+        runForPlayer(sender, () -> notifySender(sender, recipientName, message, status));
+    }
 
-            // Show "sent" message to sender
-            showSentMessage(sender, recipientName, message);
+    /**
+     * @return true if the sender has deliveries pending and had not been told so yet
+     */
+    private boolean markNotified(UUID senderUUID) {
+        while (true) {
+            var pending = pendingDeliveries.get(senderUUID);
+            if (pending == null || pending.notified()) return false;
+            // Retry if another delivery started or completed in between
+            if (pendingDeliveries.replace(senderUUID, pending, new PendingDeliveries(pending.count(), true))) return true;
+        }
+    }
 
-            plugin.getLogger().fine("Cross-server message sent: " + sender.getName() + " -> " + recipientName);
+    private void notifySender(Player sender, String recipientName, String message, DeliveryResult status) {
+        UUID senderUUID = sender.getUniqueId();
+        switch (status) {
+            case SENT -> {
+                // Update last sent target for cross-server (store name only since UUID is unknown)
+                conversations.setLastSentTarget(senderUUID, TargetInfo.crossServer(recipientName));
+
+                // Show "sent" message to sender
+                showSentMessage(sender, recipientName, message);
+
+                plugin.getLogger().fine("Cross-server message sent: " + sender.getName() + " -> " + recipientName);
+            }
+            case NOT_FOUND -> sendConfigMessage(sender, "messages.player-not-found", "<red>Player not found");
+            case TIMED_OUT -> sendConfigMessage(sender, "messages.delivery-timeout", "<red>Message could not be delivered in time");
+            case FAILED -> sendConfigMessage(sender, "messages.delivery-failed", "<red>Message could not be delivered");
+        }
+    }
+
+    /**
+     * Run a task on the thread that owns a player (the main thread on Paper, the player's
+     * region on Folia), immediately if already on it. Dropped if the player logs out first.
+     */
+    public void runForPlayer(Player player, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(player)) {
+            task.run();
         } else {
-            // No Redis, player not found locally
-            sender.sendMessage(MiniMessage.miniMessage().deserialize(
-                plugin.getConfig().getString("messages.player-not-found", "<red>Player not found")
-            ));
+            player.getScheduler().run(plugin, scheduled -> task.run(), null);
         }
     }
 
+    private void sendConfigMessage(Player player, String path, String def) {
+        player.sendMessage(MiniMessage.miniMessage().deserialize(plugin.getConfig().getString(path, def)));
+    }
+
     private void deliverMessage(Player sender, Player recipient, String message) {
         // Update reply targets (both directions for local delivery)
-        replyTargets.put(recipient.getUniqueId(), new TargetInfo(sender.getUniqueId(), sender.getName()));
-        replyTargets.put(sender.getUniqueId(), new TargetInfo(recipient.getUniqueId(), recipient.getName()));
+        conversations.setReplyTarget(recipient.getUniqueId(), new TargetInfo(sender.getUniqueId(), sender.getName()));
+        conversations.setReplyTarget(sender.getUniqueId(), new TargetInfo(recipient.getUniqueId(), recipient.getName()));
 
         // Update last sent target
-        lastSentTargets.put(sender.getUniqueId(), new TargetInfo(recipient.getUniqueId(), recipient.getName()));
-
-        // Escape user input to prevent MiniMessage injection
-        var mm = MiniMessage.miniMessage();
-        String escapedRecipient = mm.escapeTags(recipient.getName());
-        String escapedSender = mm.escapeTags(sender.getName());
-        String escapedMessage = mm.escapeTags(message);
-
-        // Format and send messages using MiniMessage
-        Component sentMsg = mm.deserialize(
-            sentFormat.replace("<recipient>", escapedRecipient)
-                      .replace("<message>", escapedMessage)
-        );
-        Component receivedMsg = mm.deserialize(
-            receivedFormat.replace("<sender>", escapedSender)
-                          .replace("<message>", escapedMessage)
-        );
+        conversations.setLastSentTarget(sender.getUniqueId(), new TargetInfo(recipient.getUniqueId(), recipient.getName()));
+
+        // Format using the pre-parsed templates (user input is inserted as plain text)
+        Component sentMsg = formats.sent(recipient.getName(), message);
+        Component receivedMsg = formats.received(sender.getName(), message);
 
         sender.sendMessage(sentMsg);
-        recipient.sendMessage(receivedMsg);
+        runForPlayer(recipient, () -> recipient.sendMessage(receivedMsg));
     }
 
-    public void handleIncomingMessage(PrivateMessage msg) {
+    /**
+     * Deliver a private message from another server, already rendered with
+     * {@link MessageFormats#received} off the main thread.
+     */
+    public void handleIncomingMessage(PrivateMessage msg, Component receivedMsg) {
         Player recipient = Bukkit.getPlayerExact(msg.recipientName());
         if (recipient == null) return;
 
@@ -120,45 +243,50 @@ public class MessageService implements Listener {
         // already filtered out vanished players from the online registry.
 
         // Update reply target (cross-server - store sender info with name for cross-server reply)
-        replyTargets.put(recipient.getUniqueId(), new TargetInfo(msg.senderUUID(), msg.senderName()));
+        conversations.setReplyTarget(recipient.getUniqueId(), new TargetInfo(msg.senderUUID(), msg.senderName()));
 
-        // Escape user input to prevent MiniMessage injection
-        var mm = MiniMessage.miniMessage();
-        String escapedSender = mm.escapeTags(msg.senderName());
-        String escapedMessage = mm.escapeTags(msg.message());
+        runForPlayer(recipient, () -> recipient.sendMessage(receivedMsg));
+    }
 
-        Component receivedMsg = mm.deserialize(
-            receivedFormat.replace("<sender>", escapedSender)
-                          .replace("<message>", escapedMessage)
-        );
-        recipient.sendMessage(receivedMsg);
+    /**
+     * Names of players on other servers matching a prefix, for tab completion.
+     * Never touches Redis, so it is safe to call on every keystroke.
+     */
+    public List<String> findRemotePlayerNames(String prefix, int limit) {
+        if (redis == null) return List.of();
+        return redis.findRemotePlayersByPrefix(prefix, limit);
     }
 
-    public TargetInfo getReplyTarget(UUID playerUUID) {
-        return replyTargets.get(playerUUID);
+    /**
+     * Get who a player would reply to. Shared across the network, so it survives server switches.
+     *
+     * @return A future completing with the target, or null if there is none
+     */
+    public CompletableFuture<TargetInfo> getReplyTarget(UUID playerUUID) {
+        return conversations.getReplyTarget(playerUUID);
     }
 
-    public TargetInfo getLastSentTarget(UUID playerUUID) {
-        return lastSentTargets.get(playerUUID);
+    /**
+     * Get who a player last messaged. Shared across the network, so it survives server switches.
+     *
+     * @return A future completing with the target, or null if there is none
+     */
+    public CompletableFuture<TargetInfo> getLastSentTarget(UUID playerUUID) {
+        return conversations.getLastSentTarget(playerUUID);
     }
 
     public void showSentMessage(Player sender, String recipientName, String message) {
-        // Escape user input to prevent MiniMessage injection
-        var mm = MiniMessage.miniMessage();
-        String escapedRecipient = mm.escapeTags(recipientName);
-        String escapedMessage = mm.escapeTags(message);
-
-        Component sentMsg = mm.deserialize(
-            sentFormat.replace("<recipient>", escapedRecipient)
-                      .replace("<message>", escapedMessage)
-        );
-        sender.sendMessage(sentMsg);
+        sender.sendMessage(formats.sent(recipientName, message));
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        // Pick up conversations the player had on other servers
+        conversations.load(event.getPlayer().getUniqueId());
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        UUID playerUUID = event.getPlayer().getUniqueId();
-        replyTargets.remove(playerUUID);
-        lastSentTargets.remove(playerUUID);
+        conversations.evict(event.getPlayer().getUniqueId());
     }
 }
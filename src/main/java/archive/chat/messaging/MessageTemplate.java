@@ -0,0 +1,136 @@
+package archive.chat.messaging;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.ComponentLike;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A MiniMessage format parsed once up front, with named placeholders filled in per message.
+ *
+ * Placeholders are parsed as private-use marker characters, so rendering only swaps
+ * the markers for the supplied values instead of re-parsing the whole format.
+ * Values are inserted as plain text components, so user input can't inject tags.
+ *
+ * MiniMessage leaves placeholders inside string tag arguments untouched, as in
+ * {@code <click:suggest_command:'/msg <sender> '>} or {@code <insert:<sender>>}. Those are
+ * filled in after rendering, directly into the click and insertion values of the
+ * rendered component, so user input can't inject tags there either.
+ */
+public final class MessageTemplate {
+    private static final char MARKER = '\uE000';
+    private static final char INDEX_BASE = '\uE100';
+    private static final Pattern MARKER_PATTERN = Pattern.compile("\uE000[\uE100-\uE1FF]");
+
+    private final Component template;
+    private final int placeholderCount;
+    private final String[] placeholderTags;
+    private final boolean placeholdersInArguments;
+
+    /**
+     * @param format       The MiniMessage format
+     * @param placeholders Placeholder tag names, in the order values are passed to {@link #render}
+     */
+    public MessageTemplate(String format, String... placeholders) {
+        var resolvers = TagResolver.builder();
+        for (int i = 0; i < placeholders.length; i++) {
+            resolvers.resolver(Placeholder.unparsed(placeholders[i], String.valueOf(new char[]{MARKER, (char) (INDEX_BASE + i)})));
+        }
+        this.template = MiniMessage.miniMessage().deserialize(format, resolvers.build());
+        this.placeholderCount = placeholders.length;
+        this.placeholderTags = new String[placeholders.length];
+        for (int i = 0; i < placeholders.length; i++) {
+            placeholderTags[i] = "<" + placeholders[i] + ">";
+        }
+        this.placeholdersInArguments = hasArgumentPlaceholder(template);
+    }
+
+    /**
+     * Render the template with plain text values.
+     */
+    public Component render(String... values) {
+        var components = new Component[values.length];
+        for (int i = 0; i < values.length; i++) {
+            components[i] = Component.text(values[i]);
+        }
+        return render(components);
+    }
+
+    /**
+     * Render the template with component values.
+     */
+    public Component render(ComponentLike... values) {
+        if (placeholderCount == 0) {
+            return template;
+        }
+        Component rendered = template.replaceText(TextReplacementConfig.builder()
+            .match(MARKER_PATTERN)
+            .replacement((match, builder) -> {
+                int index = match.group().charAt(1) - INDEX_BASE;
+                return index < values.length ? values[index] : Component.empty();
+            })
+            .build());
+        if (!placeholdersInArguments) {
+            return rendered;
+        }
+
+        var plainValues = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            plainValues[i] = PlainTextComponentSerializer.plainText().serialize(values[i].asComponent());
+        }
+        return fillArguments(rendered, plainValues);
+    }
+
+    private boolean hasArgumentPlaceholder(Component component) {
+        var click = component.clickEvent();
+        if (click != null && containsPlaceholder(click.value())) return true;
+        if (component.insertion() != null && containsPlaceholder(component.insertion())) return true;
+        for (Component child : component.children()) {
+            if (hasArgumentPlaceholder(child)) return true;
+        }
+        return false;
+    }
+
+    private boolean containsPlaceholder(String value) {
+        for (String tag : placeholderTags) {
+            if (value.contains(tag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Substitute placeholders left in click and insertion values, throughout the component tree.
+     */
+    private Component fillArguments(Component component, String[] values) {
+        var click = component.clickEvent();
+        if (click != null && containsPlaceholder(click.value())) {
+            component = component.clickEvent(ClickEvent.clickEvent(click.action(), substitute(click.value(), values)));
+        }
+        if (component.insertion() != null && containsPlaceholder(component.insertion())) {
+            component = component.insertion(substitute(component.insertion(), values));
+        }
+        if (!component.children().isEmpty()) {
+            List<Component> children = new ArrayList<>(component.children().size());
+            for (Component child : component.children()) {
+                children.add(fillArguments(child, values));
+            }
+            component = component.children(children);
+        }
+        return component;
+    }
+
+    private String substitute(String value, String[] values) {
+        for (int i = 0; i < placeholderTags.length; i++) {
+            value = value.replace(placeholderTags[i], i < values.length ? values[i] : "");
+        }
+        return value;
+    }
+}
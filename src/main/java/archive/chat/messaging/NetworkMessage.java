@@ -0,0 +1,30 @@
+package archive.chat.messaging;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A message sent between servers over Redis.
+ *
+ * Every message carries an ID and the time it was created on the origin server, so its
+ * delivery can be traced across servers. Both are 0 for messages from servers that
+ * predate them.
+ */
+public sealed interface NetworkMessage permits ChatMessage, PrivateMessage {
+    long messageId();
+
+    /**
+     * Wall-clock time (epoch millis) the message was created on the origin server.
+     */
+    long sentAt();
+
+    /**
+     * A random non-zero message ID. Collisions only affect tracing, never delivery.
+     */
+    static long newMessageId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+}
@@ -8,10 +8,20 @@ public record PrivateMessage(
     String senderName,
     String senderServer,
     String recipientName,
-    String message
-) {
+    String message,
+    long messageId,
+    long sentAt
+) implements NetworkMessage {
     private static final Gson GSON = new Gson();
 
+    /**
+     * A new private message, stamped with a fresh ID and the current time.
+     */
+    public PrivateMessage(UUID senderUUID, String senderName, String senderServer, String recipientName, String message) {
+        this(senderUUID, senderName, senderServer, recipientName, message,
+            NetworkMessage.newMessageId(), System.currentTimeMillis());
+    }
+
     public String toJson() {
         return GSON.toJson(this);
     }
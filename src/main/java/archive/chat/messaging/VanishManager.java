@@ -16,9 +16,11 @@ import org.bukkit.event.Listener;
  */
 public class VanishManager implements Listener {
     private final RedisManager redisManager;
+    private final LocalPlayerIndex playerIndex;
 
-    public VanishManager(RedisManager redisManager) {
+    public VanishManager(RedisManager redisManager, LocalPlayerIndex playerIndex) {
         this.redisManager = redisManager;
+        this.playerIndex = playerIndex;
     }
 
     /**
@@ -66,6 +68,7 @@ public class VanishManager implements Listener {
      */
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerVanish(PlayerHideEvent event) {
+        playerIndex.invalidateVisibility(event.getPlayer());
         if (redisManager != null && redisManager.isConnected()) {
             redisManager.unregisterPlayer(event.getPlayer().getName());
         }
@@ -77,6 +80,7 @@ public class VanishManager implements Listener {
      */
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerUnvanish(PlayerShowEvent event) {
+        playerIndex.invalidateVisibility(event.getPlayer());
         if (redisManager != null && redisManager.isConnected()) {
             redisManager.registerPlayer(event.getPlayer().getName());
         }
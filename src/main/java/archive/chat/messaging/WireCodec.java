@@ -0,0 +1,291 @@
+package archive.chat.messaging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding for {@link NetworkMessage}s.
+ *
+ * Frame layout:
+ * <pre>
+ * magic (1 byte, 0xAC) | version (1 byte) | type (1 byte) | fields...
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8 bytes; UUIDs are two big-endian longs.
+ * Since version 2, chat and private frames end with the message ID and origin timestamp
+ * (two big-endian longs); version 1 frames are still decoded, with both set to 0.
+ * Since version 3, chat frames then carry the rendered line (empty when absent).
+ * A batch frame carries a varint count followed by that many length-prefixed frames.
+ *
+ * Decoding never throws: truncated, oversized or unknown frames decode to null.
+ * JSON payloads start with '{' and can never be mistaken for a binary frame,
+ * so receivers can accept both formats while servers are being upgraded.
+ */
+public final class WireCodec {
+    public static final byte MAGIC = (byte) 0xAC;
+    public static final byte VERSION = 3;
+
+    private static final byte TYPE_CHAT = 1;
+    private static final byte TYPE_PRIVATE = 2;
+    private static final byte TYPE_BATCH = 3;
+    private static final int HEADER_SIZE = 3;
+    private static final int TRACE_SIZE = 16;
+
+    private WireCodec() {
+    }
+
+    /**
+     * Whether the payload is a binary frame (as opposed to legacy JSON).
+     */
+    public static boolean isBinaryFrame(byte[] payload) {
+        return payload.length >= HEADER_SIZE && payload[0] == MAGIC;
+    }
+
+    public static byte[] encode(ChatMessage msg) {
+        byte[] senderName = utf8(msg.senderName());
+        byte[] senderServer = utf8(msg.senderServer());
+        byte[] message = utf8(msg.message());
+        byte[] rendered = utf8(msg.rendered());
+
+        var writer = new Writer(HEADER_SIZE + sizeOf(senderName) + sizeOf(senderServer) + sizeOf(message)
+            + TRACE_SIZE + sizeOf(rendered));
+        writer.header(TYPE_CHAT);
+        writer.string(senderName);
+        writer.string(senderServer);
+        writer.string(message);
+        writer.int64(msg.messageId());
+        writer.int64(msg.sentAt());
+        writer.string(rendered);
+        return writer.buffer;
+    }
+
+    public static byte[] encode(PrivateMessage msg) {
+        byte[] senderName = utf8(msg.senderName());
+        byte[] senderServer = utf8(msg.senderServer());
+        byte[] recipientName = utf8(msg.recipientName());
+        byte[] message = utf8(msg.message());
+
+        var writer = new Writer(HEADER_SIZE + 16 + sizeOf(senderName) + sizeOf(senderServer)
+            + sizeOf(recipientName) + sizeOf(message) + TRACE_SIZE);
+        writer.header(TYPE_PRIVATE);
+        writer.uuid(msg.senderUUID());
+        writer.string(senderName);
+        writer.string(senderServer);
+        writer.string(recipientName);
+        writer.string(message);
+        writer.int64(msg.messageId());
+        writer.int64(msg.sentAt());
+        return writer.buffer;
+    }
+
+    /**
+     * Wrap several encoded frames into a single batch frame, preserving their order.
+     */
+    public static byte[] encodeBatch(List<byte[]> frames) {
+        int size = HEADER_SIZE + varintSize(frames.size());
+        for (byte[] frame : frames) {
+            size += sizeOf(frame);
+        }
+
+        var writer = new Writer(size);
+        writer.header(TYPE_BATCH);
+        writer.varint(frames.size());
+        for (byte[] frame : frames) {
+            writer.string(frame);
+        }
+        return writer.buffer;
+    }
+
+    /**
+     * Decode a binary frame that may be a batch.
+     * Malformed frames inside a batch are skipped; the rest are returned in order.
+     *
+     * @return The decoded messages, or an empty list if the frame is malformed
+     */
+    public static List<NetworkMessage> decodeAll(byte[] frame) {
+        if (!isBinaryFrame(frame) || frame[2] != TYPE_BATCH) {
+            NetworkMessage msg = decode(frame);
+            return msg != null ? List.of(msg) : List.of();
+        }
+        if (frame[1] < 1 || frame[1] > VERSION) {
+            return List.of();
+        }
+
+        var reader = new Reader(frame, HEADER_SIZE);
+        int count = reader.varint();
+        // Every entry takes at least one byte, so a larger count can't be valid
+        if (reader.failed || count < 0 || count > frame.length - reader.position) {
+            return List.of();
+        }
+
+        List<NetworkMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] entry = reader.bytes();
+            if (reader.failed) {
+                break;
+            }
+            NetworkMessage msg = decode(entry);
+            if (msg != null) {
+                messages.add(msg);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Decode a binary frame.
+     *
+     * @return The decoded message, or null if the frame is malformed or of an unsupported version
+     */
+    public static NetworkMessage decode(byte[] frame) {
+        if (!isBinaryFrame(frame) || frame[1] < 1 || frame[1] > VERSION) {
+            return null;
+        }
+
+        boolean traced = frame[1] >= 2;
+        boolean rendered = frame[1] >= 3;
+        var reader = new Reader(frame, HEADER_SIZE);
+        NetworkMessage msg = switch (frame[2]) {
+            case TYPE_CHAT -> new ChatMessage(reader.string(), reader.string(), reader.string(),
+                traced ? reader.int64() : 0, traced ? reader.int64() : 0, rendered ? emptyToNull(reader.string()) : null);
+            case TYPE_PRIVATE -> new PrivateMessage(reader.uuid(), reader.string(), reader.string(),
+                reader.string(), reader.string(), traced ? reader.int64() : 0, traced ? reader.int64() : 0);
+            default -> null;
+        };
+        return reader.failed ? null : msg;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static int sizeOf(byte[] string) {
+        return varintSize(string.length) + string.length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static final class Writer {
+        private final byte[] buffer;
+        private int position;
+
+        private Writer(int size) {
+            this.buffer = new byte[size];
+        }
+
+        private void header(byte type) {
+            buffer[position++] = MAGIC;
+            buffer[position++] = VERSION;
+            buffer[position++] = type;
+        }
+
+        private void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void string(byte[] utf8) {
+            varint(utf8.length);
+            System.arraycopy(utf8, 0, buffer, position, utf8.length);
+            position += utf8.length;
+        }
+
+        private void int64(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void uuid(UUID uuid) {
+            int64(uuid.getMostSignificantBits());
+            int64(uuid.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Bounds-checked reader; sets {@link #failed} instead of throwing on malformed input.
+     */
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private boolean failed;
+
+        private Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (position >= data.length) {
+                    failed = true;
+                    return 0;
+                }
+                byte b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            failed = true;
+            return 0;
+        }
+
+        private String string() {
+            int length = varint();
+            if (failed || length < 0 || length > data.length - position) {
+                failed = true;
+                return null;
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private byte[] bytes() {
+            int length = varint();
+            if (failed || length < 0 || length > data.length - position) {
+                failed = true;
+                return null;
+            }
+            byte[] value = new byte[length];
+            System.arraycopy(data, position, value, 0, length);
+            position += length;
+            return value;
+        }
+
+        private long int64() {
+            if (data.length - position < 8) {
+                failed = true;
+                return 0;
+            }
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private UUID uuid() {
+            long most = int64();
+            long least = int64();
+            return failed ? null : new UUID(most, least);
+        }
+    }
+}
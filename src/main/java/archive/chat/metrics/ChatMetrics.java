@@ -0,0 +1,300 @@
+package archive.chat.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Runtime counters and latency histograms for the messaging paths.
+ *
+ * Counters are {@link LongAdder}s and histograms are lock-free, so recording from the
+ * Lettuce I/O threads and the main thread costs a few uncontended atomic operations.
+ * Shown by {@code /archivechat stats} and exported over JMX.
+ */
+public class ChatMetrics implements ChatMetricsMBean {
+    private static final String OBJECT_NAME = "archive.chat:type=Metrics";
+
+    private final LongAdder chatPublished = new LongAdder();
+    private final LongAdder chatReceived = new LongAdder();
+    private final LongAdder privatePublished = new LongAdder();
+    private final LongAdder privateReceived = new LongAdder();
+    private final LongAdder decodeFailures = new LongAdder();
+    private final LongAdder publishFailures = new LongAdder();
+    private final LongAdder whispersUndeliverable = new LongAdder();
+    private final LongAdder whispersTimedOut = new LongAdder();
+
+    private final LatencyHistogram publishLatency = new LatencyHistogram();
+    private final LatencyHistogram lookupLatency = new LatencyHistogram();
+    private final LatencyHistogram inboundQueueDelay = new LatencyHistogram();
+    private final LatencyHistogram deliveryTime = new LatencyHistogram();
+    private final DeliveryTracer tracer;
+
+    private volatile IntSupplier inboundQueueDepth = () -> 0;
+    private volatile LongSupplier inboundDropped = () -> 0;
+    private volatile IntSupplier outboundQueueDepth = () -> 0;
+    private volatile LongSupplier outboundChatDropped = () -> 0;
+    private volatile LongSupplier outboundWhispersDropped = () -> 0;
+    private ObjectName registeredName;
+
+    public ChatMetrics(DeliveryTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    // ========== Recording ==========
+
+    public void chatPublished(int messages) {
+        chatPublished.add(messages);
+    }
+
+    public void chatReceived() {
+        chatReceived.increment();
+    }
+
+    public void privatePublished() {
+        privatePublished.increment();
+    }
+
+    public void privateReceived() {
+        privateReceived.increment();
+    }
+
+    public void decodeFailure() {
+        decodeFailures.increment();
+    }
+
+    public void publishFailure() {
+        publishFailures.increment();
+    }
+
+    public void whisperUndeliverable() {
+        whispersUndeliverable.increment();
+    }
+
+    public void whisperTimedOut() {
+        whispersTimedOut.increment();
+    }
+
+    /**
+     * Time from handing a payload to Redis until the server acknowledged it.
+     */
+    public LatencyHistogram publishLatency() {
+        return publishLatency;
+    }
+
+    /**
+     * Time to resolve which server a player is on.
+     */
+    public LatencyHistogram lookupLatency() {
+        return lookupLatency;
+    }
+
+    /**
+     * Time from receiving an inbound message until the main thread picked it up,
+     * including off-thread decoding and rendering.
+     */
+    public LatencyHistogram inboundQueueDelay() {
+        return inboundQueueDelay;
+    }
+
+    /**
+     * Main-thread time spent delivering an already rendered inbound message.
+     */
+    public LatencyHistogram deliveryTime() {
+        return deliveryTime;
+    }
+
+    /**
+     * Per-origin stage latencies of sampled inbound messages.
+     */
+    public DeliveryTracer tracer() {
+        return tracer;
+    }
+
+    /**
+     * Report the inbound queue's depth and drop count from its owner.
+     */
+    public void setInboundQueueGauges(IntSupplier depth, LongSupplier dropped) {
+        this.inboundQueueDepth = depth;
+        this.inboundDropped = dropped;
+    }
+
+    /**
+     * Report the outbound queue's depth and drop counts from its owner.
+     */
+    public void setOutboundQueueGauges(IntSupplier depth, LongSupplier chatDropped, LongSupplier whispersDropped) {
+        this.outboundQueueDepth = depth;
+        this.outboundChatDropped = chatDropped;
+        this.outboundWhispersDropped = whispersDropped;
+    }
+
+    // ========== JMX ==========
+
+    /**
+     * Register with the platform MBean server, replacing a stale registration left by a reload.
+     */
+    public void registerMBean(Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+            registeredName = name;
+        } catch (JMException e) {
+            logger.warning("Failed to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    public void unregisterMBean() {
+        if (registeredName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException ignored) {
+            // Already gone
+        }
+        registeredName = null;
+    }
+
+    // ========== Reading ==========
+
+    @Override
+    public long getChatPublished() {
+        return chatPublished.sum();
+    }
+
+    @Override
+    public long getChatReceived() {
+        return chatReceived.sum();
+    }
+
+    @Override
+    public long getPrivatePublished() {
+        return privatePublished.sum();
+    }
+
+    @Override
+    public long getPrivateReceived() {
+        return privateReceived.sum();
+    }
+
+    @Override
+    public long getDecodeFailures() {
+        return decodeFailures.sum();
+    }
+
+    @Override
+    public long getPublishFailures() {
+        return publishFailures.sum();
+    }
+
+    @Override
+    public long getWhispersUndeliverable() {
+        return whispersUndeliverable.sum();
+    }
+
+    @Override
+    public long getWhispersTimedOut() {
+        return whispersTimedOut.sum();
+    }
+
+    @Override
+    public int getInboundQueueDepth() {
+        return inboundQueueDepth.getAsInt();
+    }
+
+    @Override
+    public long getInboundDropped() {
+        return inboundDropped.getAsLong();
+    }
+
+    @Override
+    public int getOutboundQueueDepth() {
+        return outboundQueueDepth.getAsInt();
+    }
+
+    @Override
+    public long getOutboundChatDropped() {
+        return outboundChatDropped.getAsLong();
+    }
+
+    @Override
+    public long getOutboundWhispersDropped() {
+        return outboundWhispersDropped.getAsLong();
+    }
+
+    @Override
+    public long getPublishLatencyP50Micros() {
+        return publishLatency.snapshot().p50Micros();
+    }
+
+    @Override
+    public long getPublishLatencyP99Micros() {
+        return publishLatency.snapshot().p99Micros();
+    }
+
+    @Override
+    public long getLookupLatencyP50Micros() {
+        return lookupLatency.snapshot().p50Micros();
+    }
+
+    @Override
+    public long getLookupLatencyP99Micros() {
+        return lookupLatency.snapshot().p99Micros();
+    }
+
+    @Override
+    public long getInboundQueueDelayP50Micros() {
+        return inboundQueueDelay.snapshot().p50Micros();
+    }
+
+    @Override
+    public long getInboundQueueDelayP99Micros() {
+        return inboundQueueDelay.snapshot().p99Micros();
+    }
+
+    @Override
+    public long getDeliveryTimeP50Micros() {
+        return deliveryTime.snapshot().p50Micros();
+    }
+
+    @Override
+    public long getDeliveryTimeP99Micros() {
+        return deliveryTime.snapshot().p99Micros();
+    }
+
+    @Override
+    public long getTracedMessages() {
+        return tracer.getTracedCount();
+    }
+
+    @Override
+    public long getSlowMessages() {
+        return tracer.getSlowCount();
+    }
+
+    @Override
+    public void reset() {
+        chatPublished.reset();
+        chatReceived.reset();
+        privatePublished.reset();
+        privateReceived.reset();
+        decodeFailures.reset();
+        publishFailures.reset();
+        whispersUndeliverable.reset();
+        whispersTimedOut.reset();
+        publishLatency.reset();
+        lookupLatency.reset();
+        inboundQueueDelay.reset();
+        deliveryTime.reset();
+        tracer.reset();
+    }
+}
@@ -0,0 +1,58 @@
+package archive.chat.metrics;
+
+/**
+ * JMX view of {@link ChatMetrics}, registered as {@code archive.chat:type=Metrics}.
+ * Latencies are in microseconds.
+ */
+public interface ChatMetricsMBean {
+    long getChatPublished();
+
+    long getChatReceived();
+
+    long getPrivatePublished();
+
+    long getPrivateReceived();
+
+    long getDecodeFailures();
+
+    long getPublishFailures();
+
+    long getWhispersUndeliverable();
+
+    long getWhispersTimedOut();
+
+    int getInboundQueueDepth();
+
+    long getInboundDropped();
+
+    int getOutboundQueueDepth();
+
+    long getOutboundChatDropped();
+
+    long getOutboundWhispersDropped();
+
+    long getPublishLatencyP50Micros();
+
+    long getPublishLatencyP99Micros();
+
+    long getLookupLatencyP50Micros();
+
+    long getLookupLatencyP99Micros();
+
+    long getInboundQueueDelayP50Micros();
+
+    long getInboundQueueDelayP99Micros();
+
+    long getDeliveryTimeP50Micros();
+
+    long getDeliveryTimeP99Micros();
+
+    long getTracedMessages();
+
+    long getSlowMessages();
+
+    /**
+     * Zero all counters and histograms (gauges are unaffected).
+     */
+    void reset();
+}
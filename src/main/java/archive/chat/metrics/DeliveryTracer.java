@@ -0,0 +1,111 @@
+package archive.chat.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Breaks the delivery time of inbound messages down by stage, per origin server:
+ * <ul>
+ *   <li>transit: created on the origin server until received on our Redis I/O thread</li>
+ *   <li>queue: received until the main thread picked it up, including off-thread decode and render</li>
+ *   <li>delivery: main-thread send to players</li>
+ *   <li>total: created on the origin server until delivered here</li>
+ * </ul>
+ * Transit and total compare wall clocks of two machines, so they include any clock skew.
+ *
+ * Sampling is decided from the message ID, so a sample rate below 1 traces the same
+ * messages on every server. Messages slower than the threshold are logged with their
+ * stage breakdown.
+ */
+public class DeliveryTracer {
+    private static final int MAX_ORIGINS = 64;
+    private static final int SAMPLE_SCALE = 1 << 16;
+
+    private final Logger logger;
+    private final int sampleThreshold;
+    private final long slowThresholdMillis;
+    private final Map<String, OriginStats> origins = new ConcurrentHashMap<>();
+    private final LongAdder traced = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    /**
+     * Stage histograms for messages from one origin server.
+     */
+    public record OriginStats(LatencyHistogram transit, LatencyHistogram queue,
+                              LatencyHistogram delivery, LatencyHistogram total) {
+        private OriginStats() {
+            this(new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @param sampleRate          Fraction of messages traced (0 disables tracing)
+     * @param slowThresholdMillis End-to-end time above which a message is logged (0 disables the log)
+     */
+    public DeliveryTracer(Logger logger, double sampleRate, long slowThresholdMillis) {
+        this.logger = logger;
+        this.sampleThreshold = (int) Math.round(Math.max(0, Math.min(1, sampleRate)) * SAMPLE_SCALE);
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    /**
+     * Whether a message should be traced. Cheap enough to call for every message.
+     */
+    public boolean isSampled(long messageId, long sentAt) {
+        if (sentAt <= 0 || sampleThreshold == 0) return false;
+        if (sampleThreshold >= SAMPLE_SCALE) return true;
+        // Mix the bits so sequential or low-entropy IDs still sample evenly
+        long mixed = messageId * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 48) < sampleThreshold;
+    }
+
+    /**
+     * Record a delivered message's stage timings.
+     *
+     * @param receivedAt     Wall-clock millis when the I/O thread received it
+     * @param queueNanos     Time spent waiting for the main thread
+     * @param deliveryNanos  Main-thread time to deliver it
+     */
+    public void record(String originServer, String kind, long messageId, long sentAt,
+                       long receivedAt, long queueNanos, long deliveryNanos) {
+        OriginStats stats = origins.get(originServer);
+        if (stats == null) {
+            if (origins.size() >= MAX_ORIGINS) return;
+            stats = origins.computeIfAbsent(originServer, server -> new OriginStats());
+        }
+        traced.increment();
+
+        long transitMillis = Math.max(0, receivedAt - sentAt);
+        long totalMillis = Math.max(0, System.currentTimeMillis() - sentAt);
+        stats.transit().recordMicros(transitMillis * 1000);
+        stats.queue().recordNanos(queueNanos);
+        stats.delivery().recordNanos(deliveryNanos);
+        stats.total().recordMicros(totalMillis * 1000);
+
+        if (slowThresholdMillis > 0 && totalMillis >= slowThresholdMillis) {
+            slow.increment();
+            logger.warning(String.format("Slow %s message %016x from %s: %dms total (transit %dms, queue %.1fms, delivery %.1fms)",
+                kind, messageId, originServer, totalMillis, transitMillis, queueNanos / 1e6, deliveryNanos / 1e6));
+        }
+    }
+
+    public Map<String, OriginStats> getOrigins() {
+        return origins;
+    }
+
+    public long getTracedCount() {
+        return traced.sum();
+    }
+
+    public long getSlowCount() {
+        return slow.sum();
+    }
+
+    public void reset() {
+        origins.clear();
+        traced.reset();
+        slow.reset();
+    }
+}
@@ -0,0 +1,82 @@
+package archive.chat.redis;
+
+import archive.chat.messaging.WireCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces outbound chat frames into batch frames.
+ *
+ * The first frame of a batch starts a timer; the batch is published when the window
+ * elapses or it reaches the size limit, whichever comes first. The window is therefore
+ * the maximum delay any chat line can pick up from batching.
+ */
+public class ChatBatcher {
+    private final Consumer<byte[]> publisher;
+    private final long windowMillis;
+    private final int maxMessages;
+    private final ScheduledExecutorService scheduler;
+    private List<byte[]> pending = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * @param publisher    Publishes a single encoded frame (plain or batch)
+     * @param windowMillis Maximum time a frame waits for others to join its batch
+     * @param maxMessages  Batch size that triggers an immediate publish
+     */
+    public ChatBatcher(Consumer<byte[]> publisher, long windowMillis, int maxMessages) {
+        this.publisher = publisher;
+        this.windowMillis = Math.max(1, windowMillis);
+        this.maxMessages = Math.max(1, maxMessages);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "ArchiveChat-ChatBatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add an encoded chat frame to the current batch. Safe to call from any thread.
+     */
+    public synchronized void add(byte[] frame) {
+        pending.add(frame);
+        if (pending.size() >= maxMessages) {
+            flush();
+        } else if (pending.size() == 1) {
+            flushTask = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publish whatever is pending right away.
+     * Publishing happens under the lock so batches go out in the order they were formed.
+     */
+    public synchronized void flush() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // A lone frame is sent as-is so it doesn't pay for the batch wrapper
+        byte[] payload = pending.size() == 1 ? pending.get(0) : WireCodec.encodeBatch(pending);
+        pending = new ArrayList<>();
+        publisher.accept(payload);
+    }
+
+    /**
+     * Flush pending frames and stop the timer thread.
+     */
+    public void close() {
+        flush();
+        scheduler.shutdownNow();
+    }
+}
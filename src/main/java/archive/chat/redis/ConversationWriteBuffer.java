@@ -0,0 +1,46 @@
+package archive.chat.redis;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Merges conversation state writes until the next flush.
+ *
+ * Only the latest value of each field is kept per player, so a /msg that updates both
+ * the sender's and the recipient's targets costs one HSET and one EXPIRE per player
+ * at the next flush instead of a pair of commands for every field written.
+ */
+class ConversationWriteBuffer {
+    private final Map<UUID, Pending> pending = new LinkedHashMap<>();
+
+    /**
+     * Fields to write for one player, and the TTL to refresh afterwards.
+     */
+    record Pending(UUID playerUUID, Map<String, String> fields, long ttlSeconds) {
+    }
+
+    synchronized void put(UUID playerUUID, String field, String value, long ttlSeconds) {
+        var entry = pending.get(playerUUID);
+        if (entry == null) {
+            pending.put(playerUUID, new Pending(playerUUID, new HashMap<>(Map.of(field, value)), ttlSeconds));
+        } else {
+            entry.fields().put(field, value);
+            if (entry.ttlSeconds() != ttlSeconds) {
+                pending.put(playerUUID, new Pending(playerUUID, entry.fields(), ttlSeconds));
+            }
+        }
+    }
+
+    /**
+     * Take all pending writes, treating them as written.
+     */
+    synchronized List<Pending> drain() {
+        if (pending.isEmpty()) return List.of();
+        var writes = List.copyOf(pending.values());
+        pending.clear();
+        return writes;
+    }
+}
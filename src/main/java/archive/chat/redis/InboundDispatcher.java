@@ -0,0 +1,186 @@
+package archive.chat.redis;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Hands inbound network messages to the global tick thread (the main thread on Paper)
+ * in per-tick batches. Lettuce I/O threads enqueue work, and a single repeating task drains
+ * the queue each tick until the time budget is used up. Anything left over waits
+ * for the next tick instead of stretching the current one.
+ */
+public class InboundDispatcher {
+    /**
+     * What to do when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the oldest queued message to make room */
+        DROP_OLDEST,
+        /** Discard the incoming message */
+        DROP_NEWEST;
+
+        public static OverflowPolicy fromConfig(String value) {
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return DROP_OLDEST;
+            }
+        }
+    }
+
+    private final Logger logger;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final List<ThreadPoolExecutor> workers = new CopyOnWriteArrayList<>();
+    private final int capacity;
+    private final long budgetNanos;
+    private final OverflowPolicy overflowPolicy;
+    private ScheduledTask drainTask;
+
+    /**
+     * @param logger         Logger for failures while running queued work
+     * @param capacity       Maximum number of queued messages
+     * @param budgetMillis   Maximum main-thread time spent draining per tick
+     * @param overflowPolicy What to drop when the queue is full
+     */
+    public InboundDispatcher(Logger logger, int capacity, long budgetMillis, OverflowPolicy overflowPolicy) {
+        this.logger = logger;
+        this.capacity = Math.max(1, capacity);
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMillis));
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Start draining once per tick on the global region scheduler.
+     */
+    public void start(Plugin plugin) {
+        drainTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> drain(), 1L, 1L);
+    }
+
+    /**
+     * Stop draining and the workers, and discard anything still queued.
+     */
+    public void stop() {
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+        for (var worker : workers) {
+            worker.shutdownNow();
+        }
+        workers.clear();
+        queue.clear();
+        depth.set(0);
+    }
+
+    /**
+     * A single-threaded worker for preparing messages off the main thread before {@link #submit}.
+     * Its queue is bounded by the same capacity and overflow policy, drops count towards
+     * {@link #getDroppedCount()}, and waiting work is included in {@link #getQueueDepth()}.
+     * Work arriving after {@link #stop()} is discarded.
+     */
+    public ExecutorService newWorker(String name) {
+        var worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(capacity),
+            task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            },
+            this::rejectWorkerTask);
+        workers.add(worker);
+        return worker;
+    }
+
+    private void rejectWorkerTask(Runnable task, ThreadPoolExecutor worker) {
+        if (worker.isShutdown()) return;
+        dropped.increment();
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            worker.getQueue().poll();
+            if (!worker.getQueue().offer(task)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Queue work for the main thread. Safe to call from any thread.
+     *
+     * @return false if the work (or an older entry) was dropped due to overflow
+     */
+    public boolean submit(Runnable work) {
+        if (depth.get() >= capacity) {
+            dropped.increment();
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                return false;
+            }
+            if (queue.poll() != null) {
+                depth.decrementAndGet();
+            }
+            queue.offer(work);
+            depth.incrementAndGet();
+            return false;
+        }
+        queue.offer(work);
+        depth.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Run queued work until the queue is empty or the tick budget is spent.
+     *
+     * @return The number of messages processed
+     */
+    public int drain() {
+        long deadline = System.nanoTime() + budgetNanos;
+        int processed = 0;
+        Runnable work;
+        while ((work = queue.poll()) != null) {
+            depth.decrementAndGet();
+            try {
+                work.run();
+            } catch (Exception e) {
+                logger.warning("Failed to dispatch inbound message: " + e.getMessage());
+            }
+            processed++;
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        return processed;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Messages waiting for the main thread or for a worker.
+     */
+    public int getQueueDepth() {
+        int waiting = Math.max(0, depth.get());
+        for (var worker : workers) {
+            waiting += worker.getQueue().size();
+        }
+        return waiting;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
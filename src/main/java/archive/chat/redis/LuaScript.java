@@ -0,0 +1,77 @@
+package archive.chat.redis;
+
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisScriptingAsyncCommands;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A server-side Lua script executed by its SHA-1 digest.
+ * Falls back to sending the full source when Redis doesn't have the script cached
+ * (first use, or after a restart / SCRIPT FLUSH); Redis caches it again afterwards.
+ */
+public final class LuaScript {
+    private final String source;
+    private final ScriptOutputType outputType;
+    private final String sha;
+
+    public LuaScript(String source, ScriptOutputType outputType) {
+        this.source = source;
+        this.outputType = outputType;
+        this.sha = sha1(source);
+    }
+
+    /**
+     * Run the script asynchronously.
+     *
+     * @param commands The connection to run the script on
+     * @param keys     Keys the script accesses
+     * @param args     Script arguments
+     * @return A future completing with the script's reply
+     */
+    public <T> CompletableFuture<T> eval(RedisScriptingAsyncCommands<String, String> commands, String[] keys, String... args) {
+        CompletableFuture<T> evalSha = commands.<T>evalsha(sha, outputType, keys, args).toCompletableFuture();
+        return evalSha.exceptionallyCompose(e -> {
+            if (isNoScript(e)) {
+                return commands.<T>eval(source, outputType, keys, args).toCompletableFuture();
+            }
+            return CompletableFuture.failedFuture(e);
+        });
+    }
+
+    /**
+     * Run a script that only reads, using EVALSHA_RO / EVAL_RO (Redis 7+).
+     * Unlike a plain eval, these may be routed to a replica.
+     */
+    public <T> CompletableFuture<T> evalReadOnly(RedisScriptingAsyncCommands<String, String> commands, String[] keys, String... args) {
+        CompletableFuture<T> evalSha = commands.<T>evalshaReadOnly(sha, outputType, keys, args).toCompletableFuture();
+        return evalSha.exceptionallyCompose(e -> {
+            if (isNoScript(e)) {
+                return commands.<T>evalReadOnly(source, outputType, keys, args).toCompletableFuture();
+            }
+            return CompletableFuture.failedFuture(e);
+        });
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof RedisCommandExecutionException
+            && cause.getMessage() != null
+            && cause.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private static String sha1(String source) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package archive.chat.redis;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounds what this server hands to Redis for publishing.
+ *
+ * At most {@code maxInFlight} publishes are outstanding at once; anything beyond that,
+ * or anything sent while Redis is unreachable, waits here instead of piling up in
+ * Lettuce's unbounded command queue. Waiting messages are replayed in order once
+ * capacity frees up or the connection comes back, unless their deadline has passed.
+ * A message is never published after its deadline, and a whisper whose deadline passes
+ * while it waits fails right away rather than when the queue next drains.
+ *
+ * When the queue is full, chat gives way first: a whisper evicts the oldest queued chat
+ * line, and only fails itself when no chat is left to evict.
+ */
+public class OutboundQueue {
+    /**
+     * Kinds of outbound traffic, in the order they give way when the queue is full.
+     */
+    public enum Kind {
+        CHAT,
+        WHISPER
+    }
+
+    private record Entry(Kind kind, Supplier<CompletableFuture<Long>> publish,
+                         CompletableFuture<Long> result, long deadline) {
+    }
+
+    private final BooleanSupplier connected;
+    private final int capacity;
+    private final int maxInFlight;
+    private final InboundDispatcher.OverflowPolicy chatOverflowPolicy;
+    private final Deque<Entry> chat = new ArrayDeque<>();
+    private final Deque<Entry> whispers = new ArrayDeque<>();
+    private final LongAdder chatDropped = new LongAdder();
+    private final LongAdder whispersDropped = new LongAdder();
+    private int inFlight;
+    private boolean draining;
+
+    /**
+     * @param connected          Whether Redis is currently reachable
+     * @param capacity           Maximum number of waiting messages
+     * @param maxInFlight        Maximum publishes awaiting a reply from Redis
+     * @param chatOverflowPolicy Which chat line to drop when the queue is full
+     */
+    public OutboundQueue(BooleanSupplier connected, int capacity, int maxInFlight,
+                         InboundDispatcher.OverflowPolicy chatOverflowPolicy) {
+        this.connected = connected;
+        this.capacity = Math.max(1, capacity);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.chatOverflowPolicy = chatOverflowPolicy;
+    }
+
+    /**
+     * Publish now if there is capacity, otherwise queue. Safe to call from any thread.
+     *
+     * @param deadline Latest time the publish may start ({@link System#nanoTime()})
+     * @param publish  Starts the publish; called at most once, possibly on another thread
+     * @return A future completing with the publish result, or failing if the message was
+     *         dropped ({@link RejectedExecutionException}) or not sent by its deadline ({@link TimeoutException})
+     */
+    public synchronized CompletableFuture<Long> submit(Kind kind, long deadline, Supplier<CompletableFuture<Long>> publish) {
+        var entry = new Entry(kind, publish, new CompletableFuture<>(), deadline);
+        if (offer(entry)) {
+            drain();
+            if (kind == Kind.WHISPER && !entry.result().isDone()) {
+                // Still waiting; fail it at its deadline so the sender hears back even while disconnected
+                CompletableFuture.delayedExecutor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    .execute(() -> expire(entry));
+            }
+        }
+        return entry.result();
+    }
+
+    /**
+     * Replay waiting messages after the connection comes back.
+     */
+    public synchronized void resume() {
+        drain();
+    }
+
+    /**
+     * Fail everything still waiting.
+     */
+    public synchronized void clear() {
+        var error = new RejectedExecutionException("Outbound queue closed");
+        for (var entry : whispers) entry.result().completeExceptionally(error);
+        for (var entry : chat) entry.result().completeExceptionally(error);
+        whispers.clear();
+        chat.clear();
+    }
+
+    public synchronized int getQueueDepth() {
+        return chat.size() + whispers.size();
+    }
+
+    public long getChatDroppedCount() {
+        return chatDropped.sum();
+    }
+
+    public long getWhispersDroppedCount() {
+        return whispersDropped.sum();
+    }
+
+    /**
+     * Queue an entry, making room according to the drop policy.
+     *
+     * @return false if the entry itself was dropped
+     */
+    private boolean offer(Entry entry) {
+        Deque<Entry> queue = entry.kind() == Kind.CHAT ? chat : whispers;
+        if (chat.size() + whispers.size() < capacity) {
+            queue.offer(entry);
+            return true;
+        }
+        boolean evictChat = entry.kind() == Kind.WHISPER
+            ? !chat.isEmpty()
+            : !chat.isEmpty() && chatOverflowPolicy == InboundDispatcher.OverflowPolicy.DROP_OLDEST;
+        if (!evictChat) {
+            drop(entry, new RejectedExecutionException("Outbound queue full"));
+            return false;
+        }
+        drop(chat.poll(), new RejectedExecutionException("Outbound queue full"));
+        queue.offer(entry);
+        return true;
+    }
+
+    /**
+     * Send waiting messages while there is capacity, whispers first.
+     * Publishing happens under the lock so chat goes out in the order it was queued.
+     */
+    private void drain() {
+        // A publish that completes immediately re-enters through its callback; the outer loop continues
+        if (draining) return;
+        draining = true;
+        try {
+            while (inFlight < maxInFlight && connected.getAsBoolean()) {
+                Entry entry = whispers.isEmpty() ? chat.poll() : whispers.poll();
+                if (entry == null) break;
+                if (System.nanoTime() - entry.deadline() > 0) {
+                    drop(entry, new TimeoutException("Not published before the deadline"));
+                    continue;
+                }
+                send(entry);
+            }
+        } finally {
+            draining = false;
+        }
+    }
+
+    private synchronized void expire(Entry entry) {
+        if (whispers.remove(entry)) {
+            drop(entry, new TimeoutException("Not published before the deadline"));
+        }
+    }
+
+    private void send(Entry entry) {
+        inFlight++;
+        CompletableFuture<Long> published;
+        try {
+            published = entry.publish().get();
+        } catch (RuntimeException e) {
+            published = CompletableFuture.failedFuture(e);
+        }
+        published.whenComplete((receivers, e) -> {
+            synchronized (this) {
+                inFlight--;
+                drain();
+            }
+            if (e != null) {
+                entry.result().completeExceptionally(e);
+            } else {
+                entry.result().complete(receivers);
+            }
+        });
+    }
+
+    private void drop(Entry entry, Exception reason) {
+        (entry.kind() == Kind.CHAT ? chatDropped : whispersDropped).increment();
+        entry.result().completeExceptionally(reason);
+    }
+}
@@ -0,0 +1,194 @@
+package archive.chat.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Local replica of the network-wide online player registry.
+ * Maps lowercase player names to the server they are online on, so presence
+ * lookups are answered in-process without a Redis round trip.
+ *
+ * Seeded from a full snapshot on connect and kept current by presence updates
+ * published by every server. A sorted copy of the names backs prefix searches
+ * for tab completion.
+ *
+ * Updates arrive on a different connection than the snapshot, so they may be newer than
+ * it. Updates applied while a snapshot is being read are kept and replayed on top of it,
+ * so a snapshot never undoes a join or quit that happened after it was taken.
+ */
+public class PresenceDirectory {
+    /**
+     * A player online somewhere on the network.
+     *
+     * @param name   The player's name in its original case
+     * @param server The server they are online on
+     */
+    public record Entry(String name, String server) {
+    }
+
+    private final Map<String, Entry> players = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Entry> sortedPlayers = new ConcurrentSkipListMap<>();
+    private volatile boolean seeded = false;
+    // Updates applied since the oldest snapshot still being read, guarded by this
+    private final List<PresenceUpdate> recentUpdates = new ArrayList<>();
+    private long recentUpdatesStart; // Sequence number of the first entry in recentUpdates
+    private int pendingSnapshots;
+    private int generation; // Bumped by clear(), which abandons snapshots in flight
+
+    /**
+     * A snapshot being read. Exactly one of {@link #seed} or {@link #cancel} must be called.
+     */
+    public final class Snapshot {
+        private final long startSequence;
+        private final int generation;
+        private boolean done;
+
+        private Snapshot(long startSequence, int generation) {
+            this.startSequence = startSequence;
+            this.generation = generation;
+        }
+
+        /**
+         * Replace the directory contents with the snapshot, then replay the updates
+         * applied since it was started.
+         *
+         * @param snapshot Lowercase player name to entry
+         */
+        public void seed(Map<String, Entry> snapshot) {
+            synchronized (PresenceDirectory.this) {
+                if (!finish()) return;
+                players.keySet().retainAll(snapshot.keySet());
+                players.putAll(snapshot);
+                sortedPlayers.keySet().retainAll(snapshot.keySet());
+                sortedPlayers.putAll(snapshot);
+                int from = (int) (startSequence - recentUpdatesStart);
+                for (var update : recentUpdates.subList(from, recentUpdates.size())) {
+                    applyNow(update);
+                }
+                seeded = true;
+                trimRecentUpdates();
+            }
+        }
+
+        /**
+         * Give up on the snapshot, leaving the directory as it is.
+         */
+        public void cancel() {
+            synchronized (PresenceDirectory.this) {
+                if (finish()) trimRecentUpdates();
+            }
+        }
+
+        private boolean finish() {
+            if (done || generation != PresenceDirectory.this.generation) return false;
+            done = true;
+            pendingSnapshots--;
+            return true;
+        }
+    }
+
+    /**
+     * Start reading a snapshot. Updates applied from now on are kept until it completes.
+     * Call before the snapshot is requested from Redis.
+     */
+    public synchronized Snapshot beginSnapshot() {
+        pendingSnapshots++;
+        return new Snapshot(recentUpdatesStart + recentUpdates.size(), generation);
+    }
+
+    /**
+     * Apply a presence update received from any server (including our own).
+     */
+    public synchronized void apply(PresenceUpdate update) {
+        applyNow(update);
+        if (pendingSnapshots > 0) {
+            recentUpdates.add(update);
+        }
+    }
+
+    private void applyNow(PresenceUpdate update) {
+        switch (update.action()) {
+            case PresenceUpdate.JOIN -> {
+                String lower = update.playerName().toLowerCase();
+                var entry = new Entry(update.playerName(), update.server());
+                players.put(lower, entry);
+                sortedPlayers.put(lower, entry);
+            }
+            case PresenceUpdate.QUIT -> {
+                String lower = update.playerName().toLowerCase();
+                // Only remove if they are still on that server (a late quit after switching servers)
+                var entry = players.get(lower);
+                if (entry != null && entry.server().equals(update.server()) && players.remove(lower, entry)) {
+                    sortedPlayers.remove(lower, entry);
+                }
+            }
+            case PresenceUpdate.CLEAR -> {
+                players.values().removeIf(entry -> entry.server().equals(update.server()));
+                sortedPlayers.values().removeIf(entry -> entry.server().equals(update.server()));
+            }
+            default -> { }
+        }
+    }
+
+    /**
+     * Get the server a player is online on.
+     *
+     * @return The server name, or null if the player is not online anywhere
+     */
+    public String getServer(String playerName) {
+        var entry = players.get(playerName.toLowerCase());
+        return entry != null ? entry.server() : null;
+    }
+
+    /**
+     * Find online player names starting with a prefix (case-insensitive), in sorted order.
+     * Seeks straight to the prefix in the sorted index instead of scanning every player.
+     *
+     * @param prefix        The typed prefix
+     * @param limit         Maximum names to return
+     * @param excludeServer Skip players on this server (may be null)
+     * @return Matching names in their original case
+     */
+    public List<String> findByPrefix(String prefix, int limit, String excludeServer) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<String> names = new ArrayList<>();
+        for (var mapping : sortedPlayers.tailMap(lowerPrefix, true).entrySet()) {
+            if (names.size() >= limit || !mapping.getKey().startsWith(lowerPrefix)) {
+                break;
+            }
+            var entry = mapping.getValue();
+            if (!entry.server().equals(excludeServer)) {
+                names.add(entry.name());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Whether the directory has received at least one full snapshot.
+     * Until then, lookups must fall back to Redis.
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    public synchronized void clear() {
+        players.clear();
+        sortedPlayers.clear();
+        seeded = false;
+        generation++;
+        pendingSnapshots = 0;
+        trimRecentUpdates();
+    }
+
+    private void trimRecentUpdates() {
+        if (pendingSnapshots == 0) {
+            recentUpdatesStart += recentUpdates.size();
+            recentUpdates.clear();
+        }
+    }
+}
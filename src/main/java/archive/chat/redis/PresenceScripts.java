@@ -0,0 +1,226 @@
+package archive.chat.redis;
+
+import io.lettuce.core.ScriptOutputType;
+
+/**
+ * Lua scripts maintaining the network-wide presence hash.
+ *
+ * The hash maps lowercase player names to {@code <lastSeenMillis>:<playerName>:<server>}.
+ * Each server also keeps an index set of the names it registered (for cleanup) and a
+ * liveness key refreshed by its heartbeat. Entries owned by a server whose liveness key
+ * has expired are treated as offline.
+ *
+ * Per-player leases live in a sorted set scored by last-seen time. The owning server
+ * renews them on every heartbeat, and the sweeper evicts expired leases of dead servers
+ * a few at a time.
+ */
+final class PresenceScripts {
+    private PresenceScripts() {
+    }
+
+    /**
+     * KEYS: presence hash, server index, server liveness key, lease set
+     * ARGV: server, now millis, liveness TTL seconds, presence channel, player names...
+     */
+    static final LuaScript REGISTER = new LuaScript("""
+        local server = ARGV[1]
+        for i = 5, #ARGV do
+            local name = ARGV[i]
+            local lower = string.lower(name)
+            redis.call('HSET', KEYS[1], lower, ARGV[2] .. ':' .. name .. ':' .. server)
+            redis.call('SADD', KEYS[2], lower)
+            redis.call('ZADD', KEYS[4], ARGV[2], lower)
+            redis.call('PUBLISH', ARGV[4], cjson.encode({action = 'join', server = server, playerName = name}))
+        end
+        redis.call('SET', KEYS[3], ARGV[2], 'EX', ARGV[3])
+        return #ARGV - 4
+        """, ScriptOutputType.INTEGER);
+
+    /**
+     * Only removes entries still owned by this server, so a player who already
+     * joined another server is not unregistered by a late quit.
+     *
+     * KEYS: presence hash, server index, lease set
+     * ARGV: server, presence channel, player names...
+     */
+    static final LuaScript UNREGISTER = new LuaScript("""
+        local server = ARGV[1]
+        local removed = 0
+        for i = 3, #ARGV do
+            local name = ARGV[i]
+            local lower = string.lower(name)
+            local entry = redis.call('HGET', KEYS[1], lower)
+            if entry and string.match(entry, '^[^:]*:[^:]*:(.*)$') == server then
+                redis.call('HDEL', KEYS[1], lower)
+                redis.call('ZREM', KEYS[3], lower)
+                redis.call('PUBLISH', ARGV[2], cjson.encode({action = 'quit', server = server, playerName = name}))
+                removed = removed + 1
+            end
+            redis.call('SREM', KEYS[2], lower)
+        end
+        return removed
+        """, ScriptOutputType.INTEGER);
+
+    /**
+     * Replaces this server's whole membership in one atomic call: entries it owns that are
+     * not in the list are removed, and every listed player is (re)registered. Deltas are only
+     * published for actual changes, or for everyone if the liveness key had already expired
+     * (other servers will have dropped our players from their directories by then).
+     *
+     * KEYS: presence hash, server index, server liveness key, lease set
+     * ARGV: server, now millis, liveness TTL seconds, presence channel, player names...
+     */
+    static final LuaScript RESYNC = new LuaScript("""
+        local server = ARGV[1]
+        local wasLive = redis.call('EXISTS', KEYS[3]) == 1
+        local keep = {}
+        for i = 5, #ARGV do
+            keep[string.lower(ARGV[i])] = true
+        end
+
+        for _, lower in ipairs(redis.call('SMEMBERS', KEYS[2])) do
+            if not keep[lower] then
+                local entry = redis.call('HGET', KEYS[1], lower)
+                local name, owner
+                if entry then
+                    name, owner = string.match(entry, '^[^:]*:([^:]*):(.*)$')
+                end
+                if owner == server then
+                    redis.call('HDEL', KEYS[1], lower)
+                    redis.call('ZREM', KEYS[4], lower)
+                    redis.call('PUBLISH', ARGV[4], cjson.encode({action = 'quit', server = server, playerName = name}))
+                end
+                redis.call('SREM', KEYS[2], lower)
+            end
+        end
+
+        for i = 5, #ARGV do
+            local name = ARGV[i]
+            local lower = string.lower(name)
+            local entry = redis.call('HGET', KEYS[1], lower)
+            redis.call('HSET', KEYS[1], lower, ARGV[2] .. ':' .. name .. ':' .. server)
+            redis.call('SADD', KEYS[2], lower)
+            redis.call('ZADD', KEYS[4], ARGV[2], lower)
+            if not wasLive or not entry or string.match(entry, '^[^:]*:[^:]*:(.*)$') ~= server then
+                redis.call('PUBLISH', ARGV[4], cjson.encode({action = 'join', server = server, playerName = name}))
+            end
+        end
+        redis.call('SET', KEYS[3], ARGV[2], 'EX', ARGV[3])
+        return #ARGV - 4
+        """, ScriptOutputType.INTEGER);
+
+    /**
+     * KEYS: presence hash
+     * ARGV: lowercase player name, liveness key prefix
+     * Returns the hosting server, or nil if offline or the server is dead.
+     */
+    static final LuaScript LOOKUP = new LuaScript("""
+        local entry = redis.call('HGET', KEYS[1], ARGV[1])
+        if not entry then
+            return false
+        end
+        local server = string.match(entry, '^[^:]*:[^:]*:(.*)$')
+        if server and redis.call('EXISTS', ARGV[2] .. server) == 1 then
+            return server
+        end
+        return false
+        """, ScriptOutputType.VALUE);
+
+    /**
+     * KEYS: presence hash
+     * ARGV: liveness key prefix
+     * Returns a flat list of player name (original case), server pairs for live servers.
+     */
+    static final LuaScript SNAPSHOT = new LuaScript("""
+        local entries = redis.call('HGETALL', KEYS[1])
+        local live = {}
+        local result = {}
+        for i = 1, #entries, 2 do
+            local name, server = string.match(entries[i + 1], '^[^:]*:([^:]*):(.*)$')
+            if server then
+                if live[server] == nil then
+                    live[server] = redis.call('EXISTS', ARGV[1] .. server) == 1
+                end
+                if live[server] then
+                    result[#result + 1] = name
+                    result[#result + 1] = server
+                end
+            end
+        end
+        return result
+        """, ScriptOutputType.MULTI);
+
+    /**
+     * KEYS: presence hash, server index, server liveness key, lease set
+     * ARGV: server, presence channel
+     */
+    static final LuaScript CLEANUP = new LuaScript("""
+        local server = ARGV[1]
+        local removed = 0
+        for _, lower in ipairs(redis.call('SMEMBERS', KEYS[2])) do
+            local entry = redis.call('HGET', KEYS[1], lower)
+            if entry and string.match(entry, '^[^:]*:[^:]*:(.*)$') == server then
+                redis.call('HDEL', KEYS[1], lower)
+                redis.call('ZREM', KEYS[4], lower)
+                removed = removed + 1
+            end
+        end
+        redis.call('DEL', KEYS[2], KEYS[3])
+        redis.call('PUBLISH', ARGV[2], cjson.encode({action = 'clear', server = server}))
+        return removed
+        """, ScriptOutputType.INTEGER);
+
+    /**
+     * Renews this server's liveness key and the leases of every player it still owns.
+     *
+     * KEYS: presence hash, server index, server liveness key, lease set
+     * ARGV: server, now millis, liveness TTL seconds
+     */
+    static final LuaScript HEARTBEAT = new LuaScript("""
+        local server = ARGV[1]
+        redis.call('SET', KEYS[3], ARGV[2], 'EX', ARGV[3])
+        local renewed = 0
+        for _, lower in ipairs(redis.call('SMEMBERS', KEYS[2])) do
+            local entry = redis.call('HGET', KEYS[1], lower)
+            if entry and string.match(entry, '^[^:]*:[^:]*:(.*)$') == server then
+                redis.call('ZADD', KEYS[4], ARGV[2], lower)
+                renewed = renewed + 1
+            end
+        end
+        return renewed
+        """, ScriptOutputType.INTEGER);
+
+    /**
+     * Evicts up to one batch of players whose lease expired and whose server is dead
+     * (or no longer lists them), publishing a quit for each. Players of live servers
+     * only get their lease pushed back, since their server's next heartbeat renews it.
+     *
+     * KEYS: presence hash, lease set
+     * ARGV: lease cutoff millis, batch size, liveness key prefix, server index prefix, presence channel, now millis
+     */
+    static final LuaScript SWEEP = new LuaScript("""
+        local stale = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', '(' .. ARGV[1], 'LIMIT', 0, ARGV[2])
+        local evicted = 0
+        for _, lower in ipairs(stale) do
+            local entry = redis.call('HGET', KEYS[1], lower)
+            if not entry then
+                redis.call('ZREM', KEYS[2], lower)
+            else
+                local name, server = string.match(entry, '^[^:]*:([^:]*):(.*)$')
+                if server and redis.call('EXISTS', ARGV[3] .. server) == 1
+                        and redis.call('SISMEMBER', ARGV[4] .. server, lower) == 1 then
+                    redis.call('ZADD', KEYS[2], ARGV[6], lower)
+                else
+                    redis.call('HDEL', KEYS[1], lower)
+                    redis.call('ZREM', KEYS[2], lower)
+                    if server then
+                        redis.call('SREM', ARGV[4] .. server, lower)
+                        redis.call('PUBLISH', ARGV[5], cjson.encode({action = 'quit', server = server, playerName = name}))
+                    end
+                    evicted = evicted + 1
+                end
+            end
+        end
+        return {#stale, evicted}
+        """, ScriptOutputType.MULTI);
+}
@@ -0,0 +1,34 @@
+package archive.chat.redis;
+
+import com.google.gson.Gson;
+
+/**
+ * Presence delta published whenever a server's online player registry changes.
+ *
+ * @param action     One of {@link #JOIN}, {@link #QUIT} or {@link #CLEAR}
+ * @param server     The server the change happened on
+ * @param playerName The player affected (null for {@link #CLEAR})
+ */
+public record PresenceUpdate(
+    String action,
+    String server,
+    String playerName
+) {
+    public static final String JOIN = "join";
+    public static final String QUIT = "quit";
+    public static final String CLEAR = "clear";
+
+    private static final Gson GSON = new Gson();
+
+    public static PresenceUpdate join(String server, String playerName) {
+        return new PresenceUpdate(JOIN, server, playerName);
+    }
+
+    public static PresenceUpdate quit(String server, String playerName) {
+        return new PresenceUpdate(QUIT, server, playerName);
+    }
+
+    public static PresenceUpdate fromJson(String json) {
+        return GSON.fromJson(json, PresenceUpdate.class);
+    }
+}
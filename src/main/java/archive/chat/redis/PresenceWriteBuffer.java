@@ -0,0 +1,135 @@
+package archive.chat.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges presence writes for this server until the next flush.
+ *
+ * Only the latest requested state per player is kept, and it is dropped entirely if it
+ * matches what was last written (a join and quit within the same tick cancel out).
+ * Each flush then becomes at most one multi-player register and one multi-player
+ * unregister call instead of a command per player.
+ */
+class PresenceWriteBuffer {
+    private final Map<String, String> pendingAdds = new LinkedHashMap<>();
+    private final Map<String, String> pendingRemoves = new LinkedHashMap<>();
+    private final Set<String> registered = new HashSet<>();
+    // Latest join (true) or quit (false) per player since the oldest resync still reading
+    // its membership, by lowercase name; kept while resyncsPending > 0
+    private final Map<String, Boolean> changesSinceResync = new LinkedHashMap<>();
+    private final Map<String, String> changedNames = new HashMap<>();
+    private int resyncsPending;
+
+    /**
+     * Players to register and unregister in one flush.
+     */
+    record Batch(List<String> adds, List<String> removes) {
+        boolean isEmpty() {
+            return adds.isEmpty() && removes.isEmpty();
+        }
+    }
+
+    synchronized void add(String playerName) {
+        String lower = playerName.toLowerCase();
+        recordChange(lower, playerName, true);
+        pendingRemoves.remove(lower);
+        if (!registered.contains(lower)) {
+            pendingAdds.put(lower, playerName);
+        }
+    }
+
+    synchronized void remove(String playerName) {
+        String lower = playerName.toLowerCase();
+        recordChange(lower, playerName, false);
+        pendingAdds.remove(lower);
+        if (registered.contains(lower)) {
+            pendingRemoves.put(lower, playerName);
+        }
+    }
+
+    /**
+     * Take all pending writes, treating them as written.
+     */
+    synchronized Batch drain() {
+        if (pendingAdds.isEmpty() && pendingRemoves.isEmpty()) {
+            return new Batch(List.of(), List.of());
+        }
+        var batch = new Batch(new ArrayList<>(pendingAdds.values()), new ArrayList<>(pendingRemoves.values()));
+        registered.addAll(pendingAdds.keySet());
+        registered.removeAll(pendingRemoves.keySet());
+        pendingAdds.clear();
+        pendingRemoves.clear();
+        return batch;
+    }
+
+    /**
+     * Start reading the membership for a resync. Joins and quits from now on are remembered
+     * until {@link #rebase} or {@link #abandonResync}, even once flushed.
+     */
+    synchronized void beginResync() {
+        resyncsPending++;
+    }
+
+    /**
+     * Treat the resync's membership as written. All pending writes are replaced by the joins
+     * and quits since {@link #beginResync} that it doesn't reflect, joins of unlisted players
+     * and quits of listed ones, so they are sent again after it.
+     *
+     * @param playerNames The players the resync registers for this server
+     */
+    synchronized void rebase(Collection<String> playerNames) {
+        registered.clear();
+        for (String name : playerNames) {
+            registered.add(name.toLowerCase());
+        }
+        pendingAdds.clear();
+        pendingRemoves.clear();
+        for (var change : changesSinceResync.entrySet()) {
+            String lower = change.getKey();
+            if (change.getValue() && !registered.contains(lower)) {
+                pendingAdds.put(lower, changedNames.get(lower));
+            } else if (!change.getValue() && registered.contains(lower)) {
+                pendingRemoves.put(lower, changedNames.get(lower));
+            }
+        }
+        abandonResync();
+    }
+
+    synchronized void abandonResync() {
+        if (resyncsPending > 0 && --resyncsPending == 0) {
+            changesSinceResync.clear();
+            changedNames.clear();
+        }
+    }
+
+    private void recordChange(String lower, String playerName, boolean joined) {
+        if (resyncsPending == 0) return;
+        changesSinceResync.remove(lower);
+        changesSinceResync.put(lower, joined);
+        changedNames.put(lower, playerName);
+    }
+
+    /**
+     * Discard pending writes after the whole membership was written at once (cleanup).
+     *
+     * @param playerNames The players now registered for this server
+     */
+    synchronized void reset(Collection<String> playerNames) {
+        pendingAdds.clear();
+        pendingRemoves.clear();
+        resyncsPending = 0;
+        changesSinceResync.clear();
+        changedNames.clear();
+        registered.clear();
+        for (String name : playerNames) {
+            registered.add(name.toLowerCase());
+        }
+    }
+}
@@ -2,70 +2,238 @@ package archive.chat.redis;
 
 import archive.chat.ArchiveChat;
 import archive.chat.messaging.ChatMessage;
+import archive.chat.messaging.NetworkMessage;
 import archive.chat.messaging.PrivateMessage;
+import archive.chat.messaging.VanishManager;
+import archive.chat.messaging.WireCodec;
+import archive.chat.metrics.ChatMetrics;
+import io.lettuce.core.ReadFrom;
 import io.lettuce.core.RedisClient;
-import io.lettuce.core.ScanArgs;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.cluster.pubsub.StatefulRedisClusterPubSubConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.masterreplica.MasterReplica;
+import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
 import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.RedisPubSubListener;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.RedisConnectionStateAdapter;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import reactor.core.Disposable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RedisManager {
     private final ArchiveChat plugin;
     private final String uri;
     private final String serverName;
+    private final boolean clusterMode;
+    private final String serverPrivateChannel;
+    private final ChatMetrics metrics;
     private RedisClient client;
-    private StatefulRedisPubSubConnection<String, String> pubSubConnection;
-    private StatefulRedisConnection<String, String> connection;
+    private RedisClusterClient clusterClient;
+    private ClientResources clientResources;
+    private StatefulRedisPubSubConnection<byte[], byte[]> pubSubConnection;
+    private StatefulRedisClusterPubSubConnection<byte[], byte[]> clusterPubSubConnection;
+    // Shard channel subscriptions: the node each channel is subscribed on, and the nodes
+    // whose connection has the message listener attached
+    private RedisPubSubListener<byte[], byte[]> shardListener;
+    private final Map<String, String> shardChannelNodes = new ConcurrentHashMap<>();
+    private final Set<String> listeningNodes = ConcurrentHashMap.newKeySet();
+    private Disposable topologySubscription;
+    // One connection per traffic class, so a slow call in one never queues behind another
+    private final List<StatefulConnection<?, ?>> connections = new ArrayList<>();
+    private RedisClusterAsyncCommands<String, String> presenceCommands;
+    private RedisClusterAsyncCommands<String, String> lookupCommands;
+    private RedisClusterAsyncCommands<byte[], byte[]> chatCommands;
+    private RedisClusterAsyncCommands<byte[], byte[]> whisperCommands;
+    private boolean replicaReads;
+    private boolean binaryWireFormat;
+    private ChatBatcher chatBatcher;
+    private StreamTransport streamTransport;
     private volatile boolean connected = false;
+    // Watched connections currently down; Redis counts as reachable again once all are back
+    private final AtomicInteger connectionsDown = new AtomicInteger();
+    private volatile long heartbeatTtlSeconds = 15;
+    private final PresenceDirectory presenceDirectory = new PresenceDirectory();
+    private final PresenceWriteBuffer presenceWrites = new PresenceWriteBuffer();
+    private final ConversationWriteBuffer conversationWrites = new ConversationWriteBuffer();
+    private ScheduledTask presenceFlushTask;
+    private InboundDispatcher inboundDispatcher;
+    private OutboundQueue outboundQueue;
+    private long chatSpillNanos;
+    // Inbound messages are decoded and rendered here, one thread per channel to keep arrival order
+    private ExecutorService chatWorker;
+    private ExecutorService whisperWorker;
+
+    // Presence key names; in cluster mode they share a hash tag so the presence scripts,
+    // which derive per-server keys from their arguments, always run against a single shard
+    private final String presenceKey;
+    private final String presenceIndexPrefix;
+    private final String livenessPrefix;
+    private final String leaseKey;
 
-    private static final String PRIVATE_CHANNEL = "archivechat:private";
+    private static final String PRIVATE_CHANNEL_PREFIX = "archivechat:private:";
     private static final String CHAT_CHANNEL = "archivechat:chat";
-    private static final String ONLINE_PREFIX = "archivechat:online:";
+    private static final byte[] CHAT_CHANNEL_BYTES = CHAT_CHANNEL.getBytes(StandardCharsets.UTF_8);
+    private static final String PRESENCE_CHANNEL = "archivechat:presence";
+    private static final String KEY_PREFIX = "archivechat:";
+    private static final String CLUSTER_KEY_PREFIX = "{archivechat}:";
+    private static final String CONVERSATION_PREFIX = "archivechat:conv:";
+    private static final int MAX_SWEEP_BATCHES = 10;
+    private static final long LOOKUP_TIMEOUT_MILLIS = 2000;
 
     public RedisManager(ArchiveChat plugin, String uri, String serverName) {
         this.plugin = plugin;
         this.uri = uri;
         this.serverName = serverName;
+        this.clusterMode = "cluster".equalsIgnoreCase(plugin.getConfig().getString("redis.mode", "standalone"));
+        this.serverPrivateChannel = privateChannel(serverName);
+        this.metrics = plugin.getMetrics();
+
+        String keyPrefix = clusterMode ? CLUSTER_KEY_PREFIX : KEY_PREFIX;
+        this.presenceKey = keyPrefix + "presence";
+        this.presenceIndexPrefix = keyPrefix + "presence:server:";
+        this.livenessPrefix = keyPrefix + "server:";
+        this.leaseKey = keyPrefix + "presence:seen";
     }
 
-    public boolean connect() {
-        try {
-            client = RedisClient.create(uri);
-            connection = client.connect();
-            pubSubConnection = client.connectPubSub();
+    /**
+     * The private channel of a server. In cluster mode the server name is the channel's
+     * hash tag, so each server's whispers map to a fixed shard.
+     */
+    private String privateChannel(String server) {
+        return clusterMode ? PRIVATE_CHANNEL_PREFIX + "{" + server + "}" : PRIVATE_CHANNEL_PREFIX + server;
+    }
 
-            // Add connection state listener to detect disconnects
-            connection.addListener(new RedisConnectionStateAdapter() {
-                @Override
-                public void onRedisDisconnected(io.lettuce.core.RedisChannelHandler<?, ?> connection) {
-                    connected = false;
-                    plugin.getLogger().warning("Redis connection lost");
-                }
+    public boolean connect() {
+        var config = plugin.getConfig();
+        inboundDispatcher = new InboundDispatcher(
+            plugin.getLogger(),
+            config.getInt("inbound.max-queue", 10000),
+            config.getLong("inbound.tick-budget-ms", 5),
+            InboundDispatcher.OverflowPolicy.fromConfig(config.getString("inbound.overflow-policy", "drop-oldest"))
+        );
+        metrics.setInboundQueueGauges(this::getInboundQueueDepth, this::getInboundDroppedCount);
+        outboundQueue = new OutboundQueue(
+            () -> connected,
+            config.getInt("outbound.max-queue", 2000),
+            config.getInt("outbound.max-in-flight", 256),
+            InboundDispatcher.OverflowPolicy.fromConfig(config.getString("outbound.overflow-policy", "drop-oldest"))
+        );
+        chatSpillNanos = TimeUnit.SECONDS.toNanos(Math.max(0, config.getLong("outbound.spill-seconds", 10)));
+        metrics.setOutboundQueueGauges(outboundQueue::getQueueDepth,
+            outboundQueue::getChatDroppedCount, outboundQueue::getWhispersDroppedCount);
+        chatWorker = inboundDispatcher.newWorker("ArchiveChat-ChatWorker");
+        whisperWorker = inboundDispatcher.newWorker("ArchiveChat-WhisperWorker");
+        binaryWireFormat = !"json".equalsIgnoreCase(config.getString("redis.wire-format", "binary"));
+        connectionsDown.set(0);
 
-                @Override
-                public void onRedisConnected(io.lettuce.core.RedisChannelHandler<?, ?> connection, java.net.SocketAddress socketAddress) {
-                    connected = true;
-                    plugin.getLogger().info("Redis connection restored");
-                }
-            });
+        try {
+            clientResources = createClientResources(config);
+            if (clusterMode) {
+                connectCluster(config);
+            } else {
+                connectStandalone(config);
+            }
 
             // Subscribe to message channels
-            pubSubConnection.addListener(new RedisPubSubAdapter<>() {
+            RedisPubSubListener<byte[], byte[]> listener = new RedisPubSubAdapter<>() {
                 @Override
-                public void message(String channel, String message) {
-                    if (channel.equals(PRIVATE_CHANNEL)) {
+                public void message(byte[] channelBytes, byte[] message) {
+                    String channel = new String(channelBytes, StandardCharsets.UTF_8);
+                    if (channel.equals(serverPrivateChannel)) {
                         handlePrivateMessage(message);
                     } else if (channel.equals(CHAT_CHANNEL)) {
                         handleChatMessage(message);
+                    } else if (channel.equals(PRESENCE_CHANNEL)) {
+                        handlePresenceUpdate(new String(message, StandardCharsets.UTF_8));
                     }
                 }
-            });
 
-            pubSubConnection.sync().subscribe(PRIVATE_CHANNEL, CHAT_CHANNEL);
+                @Override
+                public void smessage(byte[] shardChannel, byte[] message) {
+                    message(shardChannel, message);
+                }
+            };
+            pubSubConnection.addListener(listener);
+
+            byte[] presenceChannel = PRESENCE_CHANNEL.getBytes(StandardCharsets.UTF_8);
+            if (streamTransport != null) {
+                // Chat and private messages are read from streams; only presence uses pub/sub
+                pubSubConnection.sync().subscribe(presenceChannel);
+            } else if (clusterMode) {
+                // Sharded channels are only propagated within the shard that owns them,
+                // instead of to every node in the cluster. Presence deltas are published from
+                // the presence scripts, which can't target another shard, so they stay global.
+                shardListener = listener;
+                subscribeSharded(serverPrivateChannel.getBytes(StandardCharsets.UTF_8)).join();
+                subscribeSharded(CHAT_CHANNEL_BYTES).join();
+                // Redis drops shard channel subscribers when their slot moves to another node
+                topologySubscription = clientResources.eventBus().get()
+                    .filter(ClusterTopologyChangedEvent.class::isInstance)
+                    .subscribe(event -> resubscribeSharded());
+                pubSubConnection.sync().subscribe(presenceChannel);
+            } else {
+                // Private messages are routed to the recipient's server channel
+                pubSubConnection.sync().subscribe(
+                    serverPrivateChannel.getBytes(StandardCharsets.UTF_8),
+                    CHAT_CHANNEL_BYTES,
+                    presenceChannel
+                );
+            }
             connected = true;
-            plugin.getLogger().info("Connected to Redis at " + uri);
+            inboundDispatcher.start(plugin);
+            presenceFlushTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> {
+                flushPresenceWrites();
+                flushConversationWrites();
+            }, 1L, 1L);
+            if (streamTransport != null) {
+                streamTransport.start();
+            }
+
+            // Batch frames are binary-only, so batching is skipped when sending JSON
+            if (binaryWireFormat && config.getBoolean("chat-batching.enabled", true)) {
+                chatBatcher = new ChatBatcher(
+                    this::publishChat,
+                    config.getLong("chat-batching.window-ms", 10),
+                    config.getInt("chat-batching.max-messages", 32)
+                );
+            }
+
+            // Seed the local presence directory after subscribing so no updates are missed
+            resyncPresenceDirectory();
+            plugin.getLogger().info("Connected to Redis " + (clusterMode ? "cluster" : "at " + uri)
+                + (streamTransport != null ? " (streams transport)" : ""));
             return true;
         } catch (Exception e) {
             plugin.getLogger().warning("Failed to connect to Redis: " + e.getMessage());
@@ -75,123 +243,795 @@ public class RedisManager {
         }
     }
 
+    private void connectStandalone(ConfigurationSection config) {
+        client = RedisClient.create(clientResources, uri);
+        StatefulRedisConnection<String, String> presenceConnection = client.connect();
+        StatefulRedisConnection<String, String> lookupConnection = connectLookups(config.getString("redis.read-from", "master"));
+        // Messages travel as raw bytes so binary frames skip String encoding entirely
+        StatefulRedisConnection<byte[], byte[]> chatConnection = client.connect(ByteArrayCodec.INSTANCE);
+        StatefulRedisConnection<byte[], byte[]> whisperConnection = client.connect(ByteArrayCodec.INSTANCE);
+        pubSubConnection = client.connectPubSub(ByteArrayCodec.INSTANCE);
+        connections.addAll(List.of(presenceConnection, lookupConnection, chatConnection, whisperConnection));
+
+        presenceCommands = presenceConnection.async();
+        lookupCommands = lookupConnection.async();
+        chatCommands = chatConnection.async();
+        whisperCommands = whisperConnection.async();
+
+        // Add connection state listener to detect disconnects
+        presenceConnection.addListener(connectionStateListener());
+
+        if (config.getString("redis.transport", "pubsub").equalsIgnoreCase("streams")) {
+            streamTransport = new StreamTransport(
+                plugin.getLogger(), client, chatConnection, whisperConnection, serverName, inboundDispatcher,
+                this::handleChatMessage, this::handlePrivateMessage,
+                config.getLong("streams.max-length", 10000),
+                config.getInt("streams.read-count", 200),
+                config.getLong("streams.block-ms", 1000),
+                config.getLong("streams.cursor-ttl-seconds", 300)
+            );
+        }
+    }
+
+    /**
+     * Connect to a Redis Cluster. {@code redis.uri} lists one or more seed nodes, comma-separated;
+     * the rest of the topology is discovered and kept up to date by Lettuce.
+     */
+    private void connectCluster(ConfigurationSection config) {
+        List<RedisURI> seeds = new ArrayList<>();
+        for (String seed : uri.split(",")) {
+            if (!seed.isBlank()) seeds.add(RedisURI.create(seed.trim()));
+        }
+        clusterClient = RedisClusterClient.create(clientResources, seeds);
+        clusterClient.setOptions(ClusterClientOptions.builder()
+            .topologyRefreshOptions(ClusterTopologyRefreshOptions.builder()
+                .enableAllAdaptiveRefreshTriggers()
+                // Also catch slot migrations on idle channels, which never see a MOVED redirect
+                .enablePeriodicRefresh(Duration.ofSeconds(30))
+                .build())
+            .build());
+
+        StatefulRedisClusterConnection<String, String> presenceConnection = clusterClient.connect();
+        StatefulRedisClusterConnection<String, String> lookupConnection = clusterClient.connect();
+        String readFromName = config.getString("redis.read-from", "master");
+        ReadFrom readFrom = parseReadFrom(readFromName);
+        if (readFrom != null) {
+            // Cluster connections route reads to replicas natively
+            lookupConnection.setReadFrom(readFrom);
+            replicaReads = true;
+        }
+        StatefulRedisClusterConnection<byte[], byte[]> chatConnection = clusterClient.connect(ByteArrayCodec.INSTANCE);
+        StatefulRedisClusterConnection<byte[], byte[]> whisperConnection = clusterClient.connect(ByteArrayCodec.INSTANCE);
+        clusterPubSubConnection = clusterClient.connectPubSub(ByteArrayCodec.INSTANCE);
+        pubSubConnection = clusterPubSubConnection;
+        connections.addAll(List.of(presenceConnection, lookupConnection, chatConnection, whisperConnection));
+
+        presenceCommands = presenceConnection.async();
+        lookupCommands = lookupConnection.async();
+        chatCommands = chatConnection.async();
+        whisperCommands = whisperConnection.async();
+
+        // Only the connections this plugin depends on; topology refresh and per-node
+        // connections come and go on their own and must not flip the shared state
+        for (var connection : List.of(presenceConnection, chatConnection, whisperConnection, clusterPubSubConnection)) {
+            connection.addListener(connectionStateListener());
+        }
+
+        if (config.getString("redis.transport", "pubsub").equalsIgnoreCase("streams")) {
+            // Each server reads the shared chat stream and its own private stream in one call,
+            // which Redis Cluster only allows for keys on the same shard
+            plugin.getLogger().warning("redis.transport: streams is not supported in cluster mode, using sharded pub/sub");
+        }
+    }
+
+    /**
+     * SSUBSCRIBE to a shard channel on the node that owns its slot, unless already subscribed
+     * there. Each channel needs its own call, since Redis rejects a SSUBSCRIBE whose channels
+     * hash to different slots.
+     */
+    private CompletableFuture<Void> subscribeSharded(byte[] channel) {
+        String name = new String(channel, StandardCharsets.UTF_8);
+        RedisClusterNode owner = clusterPubSubConnection.getPartitions().getPartitionBySlot(SlotHash.getSlot(channel));
+        if (owner == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No cluster node serves " + name));
+        }
+        String nodeId = owner.getNodeId();
+        String previousNodeId = shardChannelNodes.get(name);
+        if (nodeId.equals(previousNodeId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (previousNodeId != null) {
+            // Usually already dropped by Redis; stops Lettuce from restoring it on reconnect
+            try {
+                clusterPubSubConnection.getConnection(previousNodeId).async().sunsubscribe(channel);
+            } catch (RuntimeException ignored) {
+                // The old node left the cluster
+            }
+        }
+        var nodeConnection = clusterPubSubConnection.getConnection(nodeId);
+        // Shard messages arrive on the node connection, which doesn't forward to the cluster connection's listeners
+        if (listeningNodes.add(nodeId)) {
+            nodeConnection.addListener(shardListener);
+        }
+        return nodeConnection.async().ssubscribe(channel).toCompletableFuture()
+            .thenRun(() -> shardChannelNodes.put(name, nodeId));
+    }
+
+    /**
+     * Follow shard channels to their new node after a slot migration or reshard.
+     * Channels whose slot didn't move are left alone.
+     */
+    private void resubscribeSharded() {
+        for (byte[] channel : List.of(serverPrivateChannel.getBytes(StandardCharsets.UTF_8), CHAT_CHANNEL_BYTES)) {
+            CompletableFuture<Void> subscribed;
+            try {
+                subscribed = subscribeSharded(channel);
+            } catch (RuntimeException e) {
+                subscribed = CompletableFuture.failedFuture(e);
+            }
+            subscribed.exceptionally(e -> {
+                plugin.getLogger().warning("Failed to resubscribe to " + new String(channel, StandardCharsets.UTF_8)
+                    + " after a topology change: " + e.getMessage());
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Tracks one watched connection. Redis is treated as unreachable while any watched
+     * connection is down, and as restored only once all of them have reconnected.
+     * The initial connect is not a restore, since the connection was never seen down.
+     */
+    private RedisConnectionStateAdapter connectionStateListener() {
+        return new RedisConnectionStateAdapter() {
+            private final AtomicBoolean down = new AtomicBoolean();
+
+            @Override
+            public void onRedisDisconnected(io.lettuce.core.RedisChannelHandler<?, ?> connection) {
+                if (!down.compareAndSet(false, true)) return;
+                if (connectionsDown.getAndIncrement() == 0) {
+                    connected = false;
+                    plugin.getLogger().warning("Redis connection lost");
+                }
+            }
+
+            @Override
+            public void onRedisConnected(io.lettuce.core.RedisChannelHandler<?, ?> connection, java.net.SocketAddress socketAddress) {
+                if (!down.compareAndSet(true, false)) return;
+                if (connectionsDown.decrementAndGet() > 0) return;
+                connected = true;
+                plugin.getLogger().info("Redis connection restored");
+                outboundQueue.resume();
+                // Our entries may have expired and presence updates may have been missed
+                // while disconnected - re-register everyone, then reload the directory
+                resyncServerPlayers();
+            }
+        };
+    }
+
     public void disconnect() {
+        if (presenceFlushTask != null) presenceFlushTask.cancel();
+        // Players are about to switch servers; their /reply and /last targets must reach Redis
+        try {
+            CompletableFuture.allOf(flushPresenceWrites(), flushConversationWrites())
+                .get(LOOKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to flush pending writes: " + e.getMessage());
+        }
+        if (chatBatcher != null) chatBatcher.close();
+        if (outboundQueue != null) outboundQueue.clear();
+        if (streamTransport != null) streamTransport.stop();
+        if (topologySubscription != null) topologySubscription.dispose();
+        shardChannelNodes.clear();
+        listeningNodes.clear();
+        // Stop inbound traffic before the workers it feeds
         if (pubSubConnection != null) pubSubConnection.close();
-        if (connection != null) connection.close();
+        if (inboundDispatcher != null) inboundDispatcher.stop();
+        presenceDirectory.clear();
+        for (var connection : connections) {
+            connection.close();
+        }
+        connections.clear();
         if (client != null) client.shutdown();
+        if (clusterClient != null) clusterClient.shutdown();
+        if (clientResources != null) clientResources.shutdown();
+    }
+
+    /**
+     * Lettuce's default thread pools are sized for the whole machine; a game server
+     * shares its cores with the tick loop, so the pools are sized from config instead.
+     * A size of 0 keeps Lettuce's default.
+     */
+    private static ClientResources createClientResources(ConfigurationSection config) {
+        var builder = DefaultClientResources.builder();
+        int ioThreads = config.getInt("redis.io-threads", 2);
+        int computationThreads = config.getInt("redis.computation-threads", 2);
+        if (ioThreads > 0) builder.ioThreadPoolSize(ioThreads);
+        if (computationThreads > 0) builder.computationThreadPoolSize(computationThreads);
+        return builder.build();
+    }
+
+    /**
+     * Open the connection used for presence lookups. Unless reading from the master,
+     * this is a master/replica connection so lookups can be served by replicas.
+     */
+    private StatefulRedisConnection<String, String> connectLookups(String readFromName) {
+        ReadFrom readFrom = parseReadFrom(readFromName);
+        if (readFrom == null) {
+            return client.connect();
+        }
+        StatefulRedisMasterReplicaConnection<String, String> replicaConnection =
+            MasterReplica.connect(client, StringCodec.UTF8, RedisURI.create(uri));
+        replicaConnection.setReadFrom(readFrom);
+        replicaReads = true;
+        return replicaConnection;
+    }
+
+    /**
+     * @return The configured replica read policy, or null to read from the master
+     */
+    private ReadFrom parseReadFrom(String readFromName) {
+        if (readFromName == null || readFromName.equalsIgnoreCase("master") || readFromName.equalsIgnoreCase("upstream")) {
+            return null;
+        }
+        try {
+            return ReadFrom.valueOf(readFromName);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Unknown redis.read-from '" + readFromName + "', reading from the master");
+            return null;
+        }
     }
 
     public boolean isConnected() {
         return connected;
     }
 
-    public void sendCrossServerMessage(PrivateMessage msg) {
-        if (!connected) return;
-        connection.async().publish(PRIVATE_CHANNEL, msg.toJson());
+    /**
+     * Number of inbound network messages waiting for the main thread.
+     */
+    public int getInboundQueueDepth() {
+        return inboundDispatcher != null ? inboundDispatcher.getQueueDepth() : 0;
     }
 
+    /**
+     * Number of inbound network messages dropped because the queue was full.
+     */
+    public long getInboundDroppedCount() {
+        return inboundDispatcher != null ? inboundDispatcher.getDroppedCount() : 0;
+    }
+
+    /**
+     * Publish a private message directly to the server hosting the recipient.
+     * Only that server is subscribed to its private channel, so no other server decodes it.
+     * If Redis is slow or briefly unreachable the message waits in the outbound queue,
+     * but it is never published after the deadline.
+     *
+     * @param targetServer The server the recipient is online on (from {@link #findPlayerServer})
+     * @param deadline     Latest time the publish may start ({@link System#nanoTime()})
+     * @return A future completing with the number of subscribers that received it
+     *         (0 means the target server is no longer listening), or failing with a
+     *         {@link java.util.concurrent.TimeoutException} if it was not sent by the deadline
+     */
+    public CompletableFuture<Long> sendCrossServerMessage(PrivateMessage msg, String targetServer, long deadline) {
+        byte[] payload = binaryWireFormat
+            ? WireCodec.encode(msg)
+            : msg.toJson().getBytes(StandardCharsets.UTF_8);
+        metrics.privatePublished();
+        return outboundQueue.submit(OutboundQueue.Kind.WHISPER, deadline, () -> {
+            long start = System.nanoTime();
+            CompletableFuture<Long> published;
+            if (streamTransport != null) {
+                // Stream entries wait for the reader, so there is no subscriber count to report
+                published = streamTransport.publishPrivate(targetServer, payload).thenApply(id -> 1L);
+            } else {
+                byte[] channel = privateChannel(targetServer).getBytes(StandardCharsets.UTF_8);
+                published = (clusterMode ? whisperCommands.spublish(channel, payload) : whisperCommands.publish(channel, payload))
+                    .toCompletableFuture();
+            }
+            return published.whenComplete((receivers, e) -> recordPublish(start, e));
+        });
+    }
+
+    /**
+     * Publish a chat line to every server. While Redis is unreachable, recent lines are
+     * held in the outbound queue and replayed once it is back.
+     */
     public void sendChatMessage(ChatMessage msg) {
-        if (!connected) return;
-        connection.async().publish(CHAT_CHANNEL, msg.toJson());
+        metrics.chatPublished(1);
+        if (chatBatcher != null) {
+            chatBatcher.add(WireCodec.encode(msg));
+            return;
+        }
+        publishChat(binaryWireFormat
+            ? WireCodec.encode(msg)
+            : msg.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void publishChat(byte[] payload) {
+        outboundQueue.submit(OutboundQueue.Kind.CHAT, System.nanoTime() + chatSpillNanos, () -> {
+            long start = System.nanoTime();
+            CompletableFuture<Long> published;
+            if (streamTransport != null) {
+                published = streamTransport.publishChat(payload).thenApply(id -> 1L);
+            } else {
+                published = (clusterMode ? chatCommands.spublish(CHAT_CHANNEL_BYTES, payload) : chatCommands.publish(CHAT_CHANNEL_BYTES, payload))
+                    .toCompletableFuture();
+            }
+            return published.whenComplete((receivers, e) -> recordPublish(start, e));
+        });
     }
 
-    private void handlePrivateMessage(String json) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
+    private void recordPublish(long startNanos, Throwable error) {
+        if (error != null) {
+            metrics.publishFailure();
+        } else {
+            metrics.publishLatency().recordSince(startNanos);
+        }
+    }
+
+    /**
+     * Decode, validate and render a private message on the whisper worker.
+     * Only the recipient lookup and the send are left for the main thread.
+     */
+    private void handlePrivateMessage(byte[] payload) {
+        long receivedAt = System.currentTimeMillis();
+        long queuedAt = System.nanoTime();
+        whisperWorker.execute(() -> {
+            PrivateMessage msg;
+            Component line;
             try {
-                var msg = PrivateMessage.fromJson(json);
+                if (WireCodec.isBinaryFrame(payload)) {
+                    if (!(WireCodec.decode(payload) instanceof PrivateMessage decoded)) {
+                        metrics.decodeFailure();
+                        plugin.getLogger().warning("Invalid private message: malformed frame");
+                        return;
+                    }
+                    msg = decoded;
+                } else {
+                    msg = PrivateMessage.fromJson(new String(payload, StandardCharsets.UTF_8));
+                }
                 // Validate required fields
                 if (msg.senderName() == null || msg.recipientName() == null || msg.message() == null) {
+                    metrics.decodeFailure();
                     plugin.getLogger().warning("Invalid private message: missing required fields");
                     return;
                 }
-                plugin.getMessageService().handleIncomingMessage(msg);
+                line = plugin.getFormats().received(msg.senderName(), msg.message());
             } catch (Exception e) {
+                metrics.decodeFailure();
                 plugin.getLogger().warning("Failed to deserialize private message: " + e.getMessage());
+                return;
             }
+            metrics.privateReceived();
+
+            inboundDispatcher.submit(() -> {
+                long start = System.nanoTime();
+                metrics.inboundQueueDelay().recordNanos(start - queuedAt);
+                try {
+                    plugin.getMessageService().handleIncomingMessage(msg, line);
+                    traceDelivery(msg, msg.senderServer(), "private", receivedAt, start - queuedAt, start);
+                } finally {
+                    metrics.deliveryTime().recordSince(start);
+                }
+            });
         });
     }
 
-    private void handleChatMessage(String json) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            try {
-                var msg = ChatMessage.fromJson(json);
+    /**
+     * Decode, validate, filter and render chat on the chat worker. Our own server's echo
+     * never reaches the main thread, and everything else arrives there as finished lines.
+     */
+    private void handleChatMessage(byte[] payload) {
+        long receivedAt = System.currentTimeMillis();
+        long queuedAt = System.nanoTime();
+        chatWorker.execute(() -> {
+            // A binary frame may be a batch; messages are delivered in the order they were sent
+            List<ChatMessage> messages = new ArrayList<>();
+            List<Component> lines = new ArrayList<>();
+            for (var msg : decodeChat(payload)) {
                 // Validate required fields
                 if (msg.senderName() == null || msg.senderServer() == null || msg.message() == null) {
+                    metrics.decodeFailure();
                     plugin.getLogger().warning("Invalid chat message: missing required fields");
-                    return;
+                    continue;
+                }
+                metrics.chatReceived();
+                Component line = plugin.renderIncomingChat(msg);
+                if (line != null) {
+                    messages.add(msg);
+                    lines.add(line);
                 }
-                plugin.handleIncomingChat(msg);
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to deserialize chat message: " + e.getMessage());
             }
+            if (lines.isEmpty()) return;
+
+            inboundDispatcher.submit(() -> {
+                long start = System.nanoTime();
+                metrics.inboundQueueDelay().recordNanos(start - queuedAt);
+                try {
+                    for (int i = 0; i < lines.size(); i++) {
+                        var msg = messages.get(i);
+                        plugin.handleIncomingChat(lines.get(i));
+                        traceDelivery(msg, msg.senderServer(), "chat", receivedAt, start - queuedAt, start);
+                    }
+                } finally {
+                    metrics.deliveryTime().recordSince(start);
+                }
+            });
         });
     }
 
     /**
-     * Register a player as online on this server
+     * @return The chat messages in a payload, or an empty list if it could not be decoded
+     */
+    private List<ChatMessage> decodeChat(byte[] payload) {
+        try {
+            if (!WireCodec.isBinaryFrame(payload)) {
+                return List.of(ChatMessage.fromJson(new String(payload, StandardCharsets.UTF_8)));
+            }
+            var decoded = WireCodec.decodeAll(payload);
+            if (decoded.isEmpty()) {
+                metrics.decodeFailure();
+                plugin.getLogger().warning("Invalid chat message: malformed frame");
+                return List.of();
+            }
+            List<ChatMessage> messages = new ArrayList<>(decoded.size());
+            for (var msg : decoded) {
+                if (msg instanceof ChatMessage chatMessage) {
+                    messages.add(chatMessage);
+                }
+            }
+            return messages;
+        } catch (Exception e) {
+            metrics.decodeFailure();
+            plugin.getLogger().warning("Failed to deserialize chat message: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Record the stage latencies of a delivered message, if it is sampled.
+     *
+     * @param dispatchStart When the main thread picked the message up ({@link System#nanoTime()})
+     */
+    private void traceDelivery(NetworkMessage msg, String origin, String kind,
+                               long receivedAt, long queueNanos, long dispatchStart) {
+        var tracer = metrics.tracer();
+        if (tracer.isSampled(msg.messageId(), msg.sentAt())) {
+            tracer.record(origin, kind, msg.messageId(), msg.sentAt(), receivedAt, queueNanos,
+                System.nanoTime() - dispatchStart);
+        }
+    }
+
+    private void handlePresenceUpdate(String json) {
+        // Applied directly on the Lettuce I/O thread - updates are rare and only briefly lock the directory
+        try {
+            var update = PresenceUpdate.fromJson(json);
+            if (update.action() == null || update.server() == null) {
+                plugin.getLogger().warning("Invalid presence update: missing required fields");
+                return;
+            }
+            presenceDirectory.apply(update);
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to deserialize presence update: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild this server's presence entries from the players currently online
+     * (excluding vanished players) and refresh its liveness key.
+     * The player list is read on the global tick thread and each player's vanish state on
+     * the thread that owns them; the whole membership is then sent as a single atomic
+     * script call rather than one command per player.
+     */
+    public void resyncServerPlayers() {
+        if (!Bukkit.isGlobalTickThread()) {
+            Bukkit.getGlobalRegionScheduler().execute(plugin, this::resyncServerPlayers);
+            return;
+        }
+        if (!connected) return;
+
+        presenceWrites.beginResync();
+        List<CompletableFuture<String>> visibleNames = new ArrayList<>();
+        for (var player : Bukkit.getOnlinePlayers()) {
+            var name = new CompletableFuture<String>();
+            // Players who leave before their check runs are left out
+            var scheduled = player.getScheduler().run(plugin,
+                task -> name.complete(VanishManager.isVanished(player) ? null : player.getName()),
+                () -> name.complete(null));
+            if (scheduled == null) name.complete(null);
+            visibleNames.add(name);
+        }
+        CompletableFuture.allOf(visibleNames.toArray(CompletableFuture[]::new)).thenRun(() -> {
+            List<String> playerNames = new ArrayList<>(visibleNames.size());
+            for (var name : visibleNames) {
+                if (name.join() != null) playerNames.add(name.join());
+            }
+            resyncServerPlayers(playerNames);
+        });
+    }
+
+    private void resyncServerPlayers(List<String> playerNames) {
+        if (!connected) {
+            presenceWrites.abandonResync();
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        args.add(serverName);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(String.valueOf(heartbeatTtlSeconds));
+        args.add(PRESENCE_CHANNEL);
+        args.addAll(playerNames);
+
+        int playerCount = playerNames.size();
+        CompletableFuture<Object> resync;
+        // The resync supersedes buffered writes; joins and quits that happened while vanish
+        // states were being read are queued again, and the lock makes sure the flush that
+        // sends them goes out after the resync
+        synchronized (presenceWrites) {
+            presenceWrites.rebase(playerNames);
+            resync = PresenceScripts.RESYNC.eval(presenceCommands, serverPresenceKeys(), args.toArray(String[]::new));
+        }
+        resync.thenRun(() -> {
+            plugin.getLogger().fine("Resynced " + playerCount + " online players to Redis");
+            resyncPresenceDirectory();
+        }).exceptionally(e -> {
+            plugin.getLogger().warning("Failed to resync online players: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Register a player as online on this server.
+     * The local directory is updated immediately; the Redis write is buffered until the next tick.
      */
     public void registerPlayer(String playerName) {
         if (!connected) return;
-        connection.async().sadd(ONLINE_PREFIX + serverName, playerName.toLowerCase());
+        presenceDirectory.apply(PresenceUpdate.join(serverName, playerName));
+        presenceWrites.add(playerName);
     }
 
     /**
-     * Unregister a player from this server
+     * Unregister a player from this server.
+     * The local directory is updated immediately; the Redis write is buffered until the next tick.
      */
     public void unregisterPlayer(String playerName) {
         if (!connected) return;
-        connection.async().srem(ONLINE_PREFIX + serverName, playerName.toLowerCase());
+        presenceDirectory.apply(PresenceUpdate.quit(serverName, playerName));
+        presenceWrites.remove(playerName);
     }
 
     /**
-     * Check if a player is online on any server.
-     * Uses SCAN to discover all server sets (safe, non-blocking cursor-based iteration).
+     * Send buffered presence writes as at most one register and one unregister call.
+     * Both go out on the same connection, so they reach Redis in flush order.
      */
-    public boolean isPlayerOnlineAnywhere(String playerName) {
-        if (!connected) return false;
-        try {
-            String lowerName = playerName.toLowerCase();
-            var scanArgs = ScanArgs.Builder.matches(ONLINE_PREFIX + "*").limit(100);
-            var cursor = connection.sync().scan(scanArgs);
-
-            while (true) {
-                for (String key : cursor.getKeys()) {
-                    if (connection.sync().sismember(key, lowerName)) {
-                        return true;
-                    }
-                }
-                if (cursor.isFinished()) {
-                    break;
-                }
-                cursor = connection.sync().scan(cursor, scanArgs);
-            }
-            return false;
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to check player online status: " + e.getMessage());
-            return false;
+    private CompletableFuture<Void> flushPresenceWrites() {
+        if (!connected) return CompletableFuture.completedFuture(null);
+        var batch = presenceWrites.drain();
+        if (batch.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        List<CompletableFuture<?>> writes = new ArrayList<>();
+        if (!batch.adds().isEmpty()) {
+            List<String> args = new ArrayList<>();
+            args.add(serverName);
+            args.add(String.valueOf(System.currentTimeMillis()));
+            args.add(String.valueOf(heartbeatTtlSeconds));
+            args.add(PRESENCE_CHANNEL);
+            args.addAll(batch.adds());
+            writes.add(PresenceScripts.REGISTER.eval(presenceCommands,
+                serverPresenceKeys(),
+                args.toArray(String[]::new)
+            ).exceptionally(e -> {
+                plugin.getLogger().warning("Failed to register " + batch.adds().size() + " players: " + e.getMessage());
+                return null;
+            }));
+        }
+
+        if (!batch.removes().isEmpty()) {
+            List<String> args = new ArrayList<>();
+            args.add(serverName);
+            args.add(PRESENCE_CHANNEL);
+            args.addAll(batch.removes());
+            writes.add(PresenceScripts.UNREGISTER.eval(presenceCommands,
+                new String[]{presenceKey, presenceIndexPrefix + serverName, leaseKey},
+                args.toArray(String[]::new)
+            ).exceptionally(e -> {
+                plugin.getLogger().warning("Failed to unregister " + batch.removes().size() + " players: " + e.getMessage());
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Whether {@link #findPlayerServer} can answer: Redis is reachable, or the local
+     * presence directory was seeded before it went away.
+     */
+    public boolean canLocatePlayers() {
+        return connected || presenceDirectory.isSeeded();
+    }
+
+    /**
+     * Find the server a player is online on.
+     * Completes immediately from the local presence directory once it has been seeded,
+     * otherwise runs a single lookup script against the presence hash.
+     *
+     * @return A future completing with the server name, or null if the player is not online anywhere;
+     *         fails if the directory is not seeded and Redis is unreachable
+     */
+    public CompletableFuture<String> findPlayerServer(String playerName) {
+        long start = System.nanoTime();
+        // While disconnected the directory still holds the last known presence, so a
+        // whisper can wait in the outbound queue for the connection to come back
+        if (presenceDirectory.isSeeded()) {
+            String server = presenceDirectory.getServer(playerName);
+            metrics.lookupLatency().recordSince(start);
+            return CompletableFuture.completedFuture(server);
         }
+        if (!connected) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Not connected to Redis"));
+        }
+        String[] keys = {presenceKey};
+        CompletableFuture<String> lookup = replicaReads
+            ? PresenceScripts.LOOKUP.evalReadOnly(lookupCommands, keys, playerName.toLowerCase(), livenessPrefix)
+            : PresenceScripts.LOOKUP.eval(lookupCommands, keys, playerName.toLowerCase(), livenessPrefix);
+        return lookup.whenComplete((server, e) -> metrics.lookupLatency().recordSince(start));
+    }
+
+    /**
+     * Find players on other servers whose name starts with a prefix, for tab completion.
+     * Answered from the local presence directory only; returns nothing until it is seeded.
+     * Players on this server are left to the caller, which can check visibility for them.
+     *
+     * @param prefix The typed prefix (case-insensitive)
+     * @param limit  Maximum names to return
+     * @return Matching names in sorted order
+     */
+    public List<String> findRemotePlayersByPrefix(String prefix, int limit) {
+        if (!connected || !presenceDirectory.isSeeded()) return List.of();
+        return presenceDirectory.findByPrefix(prefix, limit, serverName);
     }
 
     /**
-     * Refresh TTL on this server's player set (heartbeat for crash recovery).
-     * If server crashes, the set will auto-expire after TTL seconds.
+     * Store one field of a player's conversation state. Writes are buffered and sent on the
+     * next tick, together with any other field set for the same player in the meantime.
+     * The TTL is refreshed on every write, so the state expires once the player stops messaging.
+     */
+    public void saveConversation(UUID playerUUID, String field, String value, long ttlSeconds) {
+        if (!connected) return;
+        conversationWrites.put(playerUUID, field, value, ttlSeconds);
+    }
+
+    /**
+     * Send buffered conversation writes as one HSET and one EXPIRE per player.
+     */
+    private CompletableFuture<Void> flushConversationWrites() {
+        if (!connected) return CompletableFuture.completedFuture(null);
+        var writes = conversationWrites.drain();
+        if (writes.isEmpty()) return CompletableFuture.completedFuture(null);
+
+        var commands = presenceCommands;
+        List<CompletableFuture<?>> replies = new ArrayList<>(writes.size() * 2);
+        for (var write : writes) {
+            String key = CONVERSATION_PREFIX + write.playerUUID();
+            replies.add(commands.hset(key, write.fields()).toCompletableFuture());
+            replies.add(commands.expire(key, write.ttlSeconds()).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(replies.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Load a player's conversation state.
+     *
+     * @return A future completing with the stored fields (empty if none)
+     */
+    public CompletableFuture<Map<String, String>> loadConversation(UUID playerUUID) {
+        if (!connected) return CompletableFuture.completedFuture(Map.of());
+        // Read from the primary alongside the writes, so a quick server switch sees the latest state
+        return presenceCommands.hgetall(CONVERSATION_PREFIX + playerUUID).toCompletableFuture();
+    }
+
+    /**
+     * Rebuild the local presence directory from a snapshot of the presence hash.
+     * Runs asynchronously; lookups keep using the previous contents until it completes.
+     * Also called periodically so entries of servers whose liveness key expired are dropped.
+     */
+    public void resyncPresenceDirectory() {
+        if (!connected) return;
+        String[] keys = {presenceKey};
+        var pending = presenceDirectory.beginSnapshot();
+        CompletableFuture<List<Object>> snapshotFuture = replicaReads
+            ? PresenceScripts.SNAPSHOT.evalReadOnly(lookupCommands, keys, livenessPrefix)
+            : PresenceScripts.SNAPSHOT.eval(lookupCommands, keys, livenessPrefix);
+        snapshotFuture.thenAccept(pairs -> {
+            Map<String, PresenceDirectory.Entry> snapshot = new HashMap<>();
+            for (int i = 0; i + 1 < pairs.size(); i += 2) {
+                String name = (String) pairs.get(i);
+                snapshot.put(name.toLowerCase(), new PresenceDirectory.Entry(name, (String) pairs.get(i + 1)));
+            }
+            pending.seed(snapshot);
+            plugin.getLogger().fine("Presence directory seeded with " + snapshot.size() + " players");
+        }).exceptionally(e -> {
+            pending.cancel();
+            plugin.getLogger().warning("Failed to seed presence directory: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Keys used by the scripts that write this server's presence:
+     * presence hash, server index, liveness key and lease set.
+     */
+    private String[] serverPresenceKeys() {
+        return new String[]{presenceKey, presenceIndexPrefix + serverName, livenessPrefix + serverName, leaseKey};
+    }
+
+    /**
+     * Refresh this server's liveness key and its players' leases (heartbeat for crash recovery).
+     * If server crashes, the key expires after TTL seconds and its players are treated as offline
+     * until the sweeper evicts them.
      */
     public void refreshHeartbeat(long ttlSeconds) {
         if (!connected) return;
-        connection.async().expire(ONLINE_PREFIX + serverName, ttlSeconds);
+        heartbeatTtlSeconds = ttlSeconds;
+        PresenceScripts.HEARTBEAT.eval(presenceCommands,
+            serverPresenceKeys(),
+            serverName, String.valueOf(System.currentTimeMillis()), String.valueOf(ttlSeconds)
+        ).exceptionally(e -> {
+            plugin.getLogger().warning("Failed to refresh heartbeat: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Evict players whose lease has expired and whose server is dead.
+     * Works through the lease set one bounded batch at a time, so each script call stays short
+     * no matter how many players a crashed server had. Any server may run this; evictions are
+     * published as quits, so every presence directory drops the ghosts.
+     *
+     * @param leaseMillis How long a lease stays valid without being renewed
+     * @param batchSize   Maximum leases examined per script call
+     */
+    public void sweepStalePresence(long leaseMillis, int batchSize) {
+        sweepStalePresence(leaseMillis, batchSize, 0);
+    }
+
+    private void sweepStalePresence(long leaseMillis, int batchSize, int batchesRun) {
+        if (!connected) return;
+        long now = System.currentTimeMillis();
+        PresenceScripts.SWEEP.<List<Object>>eval(presenceCommands,
+            new String[]{presenceKey, leaseKey},
+            String.valueOf(now - leaseMillis), String.valueOf(batchSize), livenessPrefix,
+            presenceIndexPrefix, PRESENCE_CHANNEL, String.valueOf(now)
+        ).thenAccept(result -> {
+            long examined = (Long) result.get(0);
+            long evicted = (Long) result.get(1);
+            if (evicted > 0) {
+                plugin.getLogger().fine("Evicted " + evicted + " stale presence entries");
+            }
+            // A full batch means more may be waiting - keep going, within a bound
+            if (examined >= batchSize && batchesRun + 1 < MAX_SWEEP_BATCHES) {
+                sweepStalePresence(leaseMillis, batchSize, batchesRun + 1);
+            }
+        }).exceptionally(e -> {
+            plugin.getLogger().warning("Failed to sweep stale presence: " + e.getMessage());
+            return null;
+        });
     }
 
     /**
-     * Remove all players registered for this server (cleanup on shutdown)
+     * Remove all players registered for this server (cleanup on shutdown).
+     * Only entries still owned by this server are removed.
      */
     public void cleanupServerPlayers() {
         if (!connected) return;
+        presenceWrites.reset(List.of());
         try {
-            connection.sync().del(ONLINE_PREFIX + serverName);
+            PresenceScripts.CLEANUP.eval(presenceCommands,
+                serverPresenceKeys(),
+                serverName, PRESENCE_CHANNEL
+            ).get(LOOKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
             plugin.getLogger().warning("Failed to cleanup server players: " + e.getMessage());
         }
     }
 }
-
-
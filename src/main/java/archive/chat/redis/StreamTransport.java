@@ -0,0 +1,212 @@
+package archive.chat.redis;
+
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.XReadArgs.StreamOffset;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Delivers chat and private messages through capped Redis Streams instead of pub/sub.
+ *
+ * Each server reads the shared chat stream and its own private stream from a cursor,
+ * so traffic published while the connection is down is read back in bulk once it
+ * recovers instead of being lost. Cursors are also persisted to Redis with a short
+ * TTL so a quick restart resumes where it left off.
+ */
+public class StreamTransport {
+    private static final String CHAT_STREAM = "archivechat:stream:chat";
+    private static final String PRIVATE_STREAM_PREFIX = "archivechat:stream:private:";
+    private static final String CURSOR_PREFIX = "archivechat:stream:cursor:";
+    private static final byte[] PAYLOAD_FIELD = "d".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CHAT_CURSOR_FIELD = "chat".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PRIVATE_CURSOR_FIELD = "private".getBytes(StandardCharsets.UTF_8);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long BACKPRESSURE_DELAY_MILLIS = 50;
+
+    private final Logger logger;
+    private final RedisClient client;
+    private final StatefulRedisConnection<byte[], byte[]> chatConnection;
+    private final StatefulRedisConnection<byte[], byte[]> privateConnection;
+    private final InboundDispatcher dispatcher;
+    private final Consumer<byte[]> chatHandler;
+    private final Consumer<byte[]> privateHandler;
+    private final byte[] chatStream = CHAT_STREAM.getBytes(StandardCharsets.UTF_8);
+    private final byte[] privateStream;
+    private final byte[] cursorKey;
+    private final XAddArgs addArgs;
+    private final int readCount;
+    private final long blockMillis;
+    private final long cursorTtlSeconds;
+
+    private StatefulRedisConnection<byte[], byte[]> readConnection;
+    private Thread readerThread;
+    private volatile boolean running;
+    private String chatCursor;
+    private String privateCursor;
+
+    /**
+     * @param chatConnection    Connection for chat appends and cursor saves
+     * @param privateConnection Connection for private message appends
+     * @param maxLength         Approximate number of entries kept per stream (the catch-up backlog)
+     * @param readCount         Maximum entries fetched per read
+     * @param blockMillis       How long a read waits for new entries
+     * @param cursorTtlSeconds  How long a persisted cursor stays valid after a shutdown
+     */
+    public StreamTransport(Logger logger, RedisClient client, StatefulRedisConnection<byte[], byte[]> chatConnection,
+                           StatefulRedisConnection<byte[], byte[]> privateConnection,
+                           String serverName, InboundDispatcher dispatcher,
+                           Consumer<byte[]> chatHandler, Consumer<byte[]> privateHandler,
+                           long maxLength, int readCount, long blockMillis, long cursorTtlSeconds) {
+        this.logger = logger;
+        this.client = client;
+        this.chatConnection = chatConnection;
+        this.privateConnection = privateConnection;
+        this.dispatcher = dispatcher;
+        this.chatHandler = chatHandler;
+        this.privateHandler = privateHandler;
+        this.privateStream = privateStream(serverName);
+        this.cursorKey = (CURSOR_PREFIX + serverName).getBytes(StandardCharsets.UTF_8);
+        this.addArgs = XAddArgs.Builder.maxlen(Math.max(1, maxLength)).approximateTrimming();
+        this.readCount = Math.max(1, readCount);
+        this.blockMillis = Math.max(1, blockMillis);
+        this.cursorTtlSeconds = Math.max(1, cursorTtlSeconds);
+    }
+
+    private static byte[] privateStream(String serverName) {
+        return (PRIVATE_STREAM_PREFIX + serverName).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Resolve the starting cursors and start the reader thread.
+     * Blocking reads get their own connection so they never delay publishes.
+     */
+    public void start() {
+        readConnection = client.connect(ByteArrayCodec.INSTANCE);
+        loadCursors();
+
+        running = true;
+        readerThread = new Thread(this::readLoop, "ArchiveChat-StreamReader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (readerThread != null) {
+            readerThread.interrupt();
+            try {
+                readerThread.join(blockMillis + 500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (readConnection != null) readConnection.close();
+    }
+
+    public CompletableFuture<String> publishChat(byte[] payload) {
+        return chatConnection.async().xadd(chatStream, addArgs, Map.of(PAYLOAD_FIELD, payload)).toCompletableFuture();
+    }
+
+    public CompletableFuture<String> publishPrivate(String targetServer, byte[] payload) {
+        return privateConnection.async().xadd(privateStream(targetServer), addArgs, Map.of(PAYLOAD_FIELD, payload))
+            .toCompletableFuture();
+    }
+
+    /**
+     * Resume from the persisted cursors if they are still fresh, otherwise start at the
+     * current end of each stream so a long-dead server doesn't replay stale chat.
+     */
+    private void loadCursors() {
+        var commands = readConnection.sync();
+        Map<byte[], byte[]> saved = commands.hgetall(cursorKey);
+        for (var entry : saved.entrySet()) {
+            String id = new String(entry.getValue(), StandardCharsets.UTF_8);
+            if (Arrays.equals(entry.getKey(), CHAT_CURSOR_FIELD)) {
+                chatCursor = id;
+            } else if (Arrays.equals(entry.getKey(), PRIVATE_CURSOR_FIELD)) {
+                privateCursor = id;
+            }
+        }
+        if (chatCursor == null) chatCursor = latestId(chatStream);
+        if (privateCursor == null) privateCursor = latestId(privateStream);
+    }
+
+    private String latestId(byte[] stream) {
+        List<StreamMessage<byte[], byte[]>> last = readConnection.sync()
+            .xrevrange(stream, Range.create("-", "+"), Limit.from(1));
+        return last.isEmpty() ? "0-0" : last.get(0).getId();
+    }
+
+    private void readLoop() {
+        var readArgs = XReadArgs.Builder.count(readCount).block(blockMillis);
+        while (running) {
+            try {
+                // Let the main thread catch up before pulling more of a large backlog
+                if (dispatcher.getQueueDepth() >= dispatcher.getCapacity() / 2) {
+                    Thread.sleep(BACKPRESSURE_DELAY_MILLIS);
+                    continue;
+                }
+
+                @SuppressWarnings("unchecked")
+                List<StreamMessage<byte[], byte[]>> messages = readConnection.sync().xread(readArgs,
+                    StreamOffset.from(chatStream, chatCursor),
+                    StreamOffset.from(privateStream, privateCursor));
+                if (messages.isEmpty()) {
+                    continue;
+                }
+
+                for (var message : messages) {
+                    byte[] payload = message.getBody().values().stream().findFirst().orElse(null);
+                    boolean isChat = Arrays.equals(message.getStream(), chatStream);
+                    if (isChat) {
+                        chatCursor = message.getId();
+                    } else {
+                        privateCursor = message.getId();
+                    }
+                    if (payload == null) continue;
+                    if (isChat) {
+                        chatHandler.accept(payload);
+                    } else {
+                        privateHandler.accept(payload);
+                    }
+                }
+                saveCursors();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) return;
+                // Connection blip - Lettuce reconnects on its own, and the next read resumes from the cursors
+                logger.fine("Stream read failed, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void saveCursors() {
+        var commands = chatConnection.async();
+        commands.hset(cursorKey, Map.of(
+            CHAT_CURSOR_FIELD, chatCursor.getBytes(StandardCharsets.UTF_8),
+            PRIVATE_CURSOR_FIELD, privateCursor.getBytes(StandardCharsets.UTF_8)
+        ));
+        commands.expire(cursorKey, cursorTtlSeconds);
+    }
+}
@@ -0,0 +1,248 @@
+package archive.chat.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WireCodecTest {
+    private static final UUID SENDER = UUID.fromString("0f3c9a52-6d1e-4b7a-9c2d-5e8f1a3b7c4d");
+
+    private static final ChatMessage CHAT =
+        new ChatMessage("Alice", "survival", "hello there", 42L, 1_700_000_000_000L, "{\"text\":\"hello there\"}");
+    private static final PrivateMessage WHISPER =
+        new PrivateMessage(SENDER, "Alice", "survival", "Bob", "psst", 7L, 1_700_000_000_001L);
+
+    @Test
+    void chatRoundTrip() {
+        assertEquals(CHAT, WireCodec.decode(WireCodec.encode(CHAT)));
+    }
+
+    @Test
+    void chatWithoutRenderedLineRoundTrip() {
+        var chat = new ChatMessage("Alice", "survival", "hi", 1L, 2L, null);
+        assertEquals(chat, WireCodec.decode(WireCodec.encode(chat)));
+    }
+
+    @Test
+    void privateMessageRoundTrip() {
+        assertEquals(WHISPER, WireCodec.decode(WireCodec.encode(WHISPER)));
+    }
+
+    @Test
+    void nonAsciiRoundTrip() {
+        var chat = new ChatMessage("J\u00f6rg", "lobby", "caf\u00e9 \u2615 \ud83d\ude00", 3L, 4L, null);
+        assertEquals(chat, WireCodec.decode(WireCodec.encode(chat)));
+    }
+
+    @Test
+    void longStringUsesMultiByteLength() {
+        var chat = new ChatMessage("Alice", "survival", "x".repeat(20_000), 5L, 6L, null);
+        assertEquals(chat, WireCodec.decode(WireCodec.encode(chat)));
+    }
+
+    @Test
+    void decodesVersion1Chat() {
+        var frame = new Frame(1, 1).string("Alice").string("survival").string("hello").bytes();
+        assertEquals(new ChatMessage("Alice", "survival", "hello", 0L, 0L, null), WireCodec.decode(frame));
+    }
+
+    @Test
+    void decodesVersion1Private() {
+        var frame = new Frame(1, 2).uuid(SENDER).string("Alice").string("survival").string("Bob").string("psst").bytes();
+        assertEquals(new PrivateMessage(SENDER, "Alice", "survival", "Bob", "psst", 0L, 0L), WireCodec.decode(frame));
+    }
+
+    @Test
+    void decodesVersion2Chat() {
+        var frame = new Frame(2, 1).string("Alice").string("survival").string("hello").int64(9L).int64(10L).bytes();
+        assertEquals(new ChatMessage("Alice", "survival", "hello", 9L, 10L, null), WireCodec.decode(frame));
+    }
+
+    @Test
+    void decodesVersion2Private() {
+        var frame = new Frame(2, 2).uuid(SENDER).string("Alice").string("survival").string("Bob").string("psst")
+            .int64(9L).int64(10L).bytes();
+        assertEquals(new PrivateMessage(SENDER, "Alice", "survival", "Bob", "psst", 9L, 10L), WireCodec.decode(frame));
+    }
+
+    @Test
+    void decodesVersion3ChatWithEmptyRenderedLineAsNull() {
+        var frame = new Frame(3, 1).string("Alice").string("survival").string("hello").int64(9L).int64(10L)
+            .string("").bytes();
+        assertEquals(new ChatMessage("Alice", "survival", "hello", 9L, 10L, null), WireCodec.decode(frame));
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] frame = WireCodec.encode(CHAT);
+        frame[1] = WireCodec.VERSION + 1;
+        assertNull(WireCodec.decode(frame));
+        assertTrue(WireCodec.decodeAll(frame).isEmpty());
+
+        frame[1] = 0;
+        assertNull(WireCodec.decode(frame));
+    }
+
+    @Test
+    void rejectsUnknownType() {
+        byte[] frame = WireCodec.encode(CHAT);
+        frame[2] = 99;
+        assertNull(WireCodec.decode(frame));
+        assertTrue(WireCodec.decodeAll(frame).isEmpty());
+    }
+
+    @Test
+    void rejectsJsonAndShortPayloads() {
+        byte[] json = "{\"senderName\":\"Alice\"}".getBytes(StandardCharsets.UTF_8);
+        assertFalse(WireCodec.isBinaryFrame(json));
+        assertNull(WireCodec.decode(json));
+        assertNull(WireCodec.decode(new byte[]{WireCodec.MAGIC, WireCodec.VERSION}));
+        assertNull(WireCodec.decode(new byte[0]));
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        for (byte[] frame : List.of(WireCodec.encode(CHAT), WireCodec.encode(WHISPER))) {
+            for (int length = 0; length < frame.length; length++) {
+                assertNull(WireCodec.decode(Arrays.copyOf(frame, length)), "truncated to " + length);
+            }
+        }
+    }
+
+    @Test
+    void rejectsTruncatedVarint() {
+        // Continuation bit set on the last byte of the frame
+        byte[] frame = {WireCodec.MAGIC, WireCodec.VERSION, 1, (byte) 0x80};
+        assertNull(WireCodec.decode(frame));
+    }
+
+    @Test
+    void rejectsOversizedVarint() {
+        // Five continuation bytes: more than a 32-bit length can use
+        byte[] frame = {WireCodec.MAGIC, WireCodec.VERSION, 1,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+        assertNull(WireCodec.decode(frame));
+    }
+
+    @Test
+    void rejectsNegativeAndOverlongLengths() {
+        // 0xFFFFFFFF decodes to -1
+        byte[] negative = {WireCodec.MAGIC, WireCodec.VERSION, 1,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        assertNull(WireCodec.decode(negative));
+
+        byte[] overlong = new Frame(3, 1).varint(1000).bytes();
+        assertNull(WireCodec.decode(overlong));
+    }
+
+    @Test
+    void batchRoundTripKeepsOrder() {
+        var second = new ChatMessage("Carol", "creative", "second", 11L, 12L, null);
+        byte[] batch = WireCodec.encodeBatch(List.of(WireCodec.encode(CHAT), WireCodec.encode(WHISPER), WireCodec.encode(second)));
+        assertEquals(List.of(CHAT, WHISPER, second), WireCodec.decodeAll(batch));
+    }
+
+    @Test
+    void batchIsNotASingleMessage() {
+        byte[] batch = WireCodec.encodeBatch(List.of(WireCodec.encode(CHAT)));
+        assertNull(WireCodec.decode(batch));
+    }
+
+    @Test
+    void decodeAllAcceptsSingleFrames() {
+        assertEquals(List.of(CHAT), WireCodec.decodeAll(WireCodec.encode(CHAT)));
+    }
+
+    @Test
+    void emptyBatch() {
+        assertTrue(WireCodec.decodeAll(WireCodec.encodeBatch(List.of())).isEmpty());
+    }
+
+    @Test
+    void batchSkipsMalformedEntries() {
+        byte[] broken = Arrays.copyOf(WireCodec.encode(WHISPER), 10);
+        byte[] batch = WireCodec.encodeBatch(List.of(WireCodec.encode(CHAT), broken, "{}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of(CHAT), WireCodec.decodeAll(batch));
+    }
+
+    @Test
+    void nestedBatchIsSkipped() {
+        byte[] inner = WireCodec.encodeBatch(List.of(WireCodec.encode(WHISPER)));
+        byte[] batch = WireCodec.encodeBatch(List.of(inner, WireCodec.encode(CHAT)));
+        assertEquals(List.of(CHAT), WireCodec.decodeAll(batch));
+    }
+
+    @Test
+    void shortBatchKeepsCompleteEntries() {
+        byte[] chat = WireCodec.encode(CHAT);
+        byte[] batch = WireCodec.encodeBatch(List.of(chat, WireCodec.encode(WHISPER)));
+        // Cut into the second entry: the first is still delivered
+        assertEquals(List.of(CHAT), WireCodec.decodeAll(Arrays.copyOf(batch, batch.length - 1)));
+    }
+
+    @Test
+    void rejectsBatchCountLargerThanPayload() {
+        byte[] batch = new Frame(3, 3).varint(50).string("x").bytes();
+        assertTrue(WireCodec.decodeAll(batch).isEmpty());
+    }
+
+    @Test
+    void rejectsBatchWithUnknownVersion() {
+        byte[] batch = WireCodec.encodeBatch(List.of(WireCodec.encode(CHAT)));
+        batch[1] = WireCodec.VERSION + 1;
+        assertTrue(WireCodec.decodeAll(batch).isEmpty());
+    }
+
+    /**
+     * Builds frames by hand, for versions and layouts the encoder no longer writes.
+     */
+    private static final class Frame {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Frame(int version, int type) {
+            out.write(WireCodec.MAGIC);
+            out.write(version);
+            out.write(type);
+        }
+
+        Frame varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+            return this;
+        }
+
+        Frame string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            out.writeBytes(utf8);
+            return this;
+        }
+
+        Frame int64(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+            return this;
+        }
+
+        Frame uuid(UUID uuid) {
+            return int64(uuid.getMostSignificantBits()).int64(uuid.getLeastSignificantBits());
+        }
+
+        byte[] bytes() {
+            return out.toByteArray();
+        }
+    }
+}